@@ -0,0 +1,53 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.merchant.dto.Status;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/** Objetos compartilhados pelos benchmarks do gateway. */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {}
+
+    // Mesmos módulos que o Spring Boot registra (parameter names, JavaTime...).
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static MerchantSnapshot merchant() {
+        return MerchantSnapshot.builder()
+                .id(1L)
+                .name("Loja Bench")
+                .clientId("cli_bench")
+                .webhookUrl("http://127.0.0.1:9/webhook")
+                .status(Status.ACTIVE)
+                .interest(2.5)
+                .build();
+    }
+
+    static PaymentRequest cardRequest() {
+        return new PaymentRequest(
+                MethodPayment.CARD,
+                "BRL",
+                new BigDecimal("250.50"),
+                "ORD-123",
+                Map.of("installments", 12)
+        );
+    }
+
+    // O custo medido é o do código, não o do terminal: os logs continuam sendo
+    // montados (argumentos avaliados), mas não são escritos.
+    static void quietLogging() {
+        var context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+    }
+}
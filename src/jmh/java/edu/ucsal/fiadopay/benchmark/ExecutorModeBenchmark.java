@@ -0,0 +1,64 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import edu.ucsal.fiadopay.infra.config.ConcurrencyLimitedExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tarefas bloqueantes por segundo em cada modo do {@code PaymentExecutorsConfig}.
+ * Cada tarefa dorme {@code blockMs}, simulando JDBC ou uma chamada HTTP.
+ * {@code virtualLimited} usa o mesmo teto padrão do pool do Hikari (10).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 4, time = 2)
+@Fork(1)
+public class ExecutorModeBenchmark {
+
+    private static final int TASKS = 400;
+
+    @Param({"fixed4", "fixed8", "virtualLimited", "virtualUnlimited"})
+    public String mode;
+
+    @Param({"10"})
+    public long blockMs;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        executor = switch (mode) {
+            case "fixed4" -> Executors.newFixedThreadPool(4);
+            case "fixed8" -> Executors.newFixedThreadPool(8);
+            case "virtualLimited" -> new ConcurrencyLimitedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 10);
+            case "virtualUnlimited" -> new ConcurrencyLimitedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 0);
+            default -> throw new IllegalArgumentException(mode);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void blockingTasks() throws Exception {
+        Future<?>[] futures = new Future<?>[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            futures[i] = executor.submit(() -> {
+                Thread.sleep(blockMs);
+                return null;
+            });
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.infra.id.UuidV7Generator;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentMapper;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.domain.paymant.factory.PaymentFactoryImpl;
+import edu.ucsal.fiadopay.domain.paymant.strategy.CardPaymentStrategy;
+import edu.ucsal.fiadopay.domain.paymant.strategy.PaymentStrategy;
+import edu.ucsal.fiadopay.service.webhook.WebhookEvent;
+import edu.ucsal.fiadopay.service.webhook.WebhookEventFactory;
+import edu.ucsal.fiadopay.service.webhook.WebhookSigner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peças do caminho de criação de pagamento e de webhook, medidas isoladamente.
+ * Rode com o perfil {@code benchmark}; o profiler {@code gc} já vem ligado e
+ * reporta {@code gc.alloc.rate.norm} (bytes por operação) ao lado do throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayHotPathBenchmark {
+
+    private CardPaymentStrategy cardStrategy;
+    private PaymentFactoryImpl factory;
+    private WebhookEventFactory eventFactory;
+    private WebhookSigner signer;
+
+    private MerchantSnapshot merchant;
+    private PaymentRequest request;
+    private Payment payment;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        var mapper = BenchmarkFixtures.objectMapper();
+        var ids = new UuidV7Generator();
+
+        cardStrategy = new CardPaymentStrategy(mapper, ids);
+        factory = new PaymentFactoryImpl(List.of(cardStrategy),
+                EnumSet.of(MethodPayment.BOLETO, MethodPayment.TICKET), new SimpleMeterRegistry());
+        eventFactory = new WebhookEventFactory(mapper, ids);
+        signer = new WebhookSigner("ucsal-2025");
+
+        merchant = BenchmarkFixtures.merchant();
+        request = BenchmarkFixtures.cardRequest();
+        payment = cardStrategy.process(request, merchant, "idem-bench");
+        payment.setStatus(Status.APPROVED);
+        payload = eventFactory.buildPaymentUpdatedEvent(payment).payload();
+    }
+
+    @Benchmark
+    public Payment cardStrategyProcess() {
+        return cardStrategy.process(request, merchant, "idem-bench");
+    }
+
+    @Benchmark
+    public PaymentResponse mapperToResponse() {
+        return PaymentMapper.toResponse(payment);
+    }
+
+    @Benchmark
+    public WebhookEvent buildPaymentUpdatedEvent() {
+        return eventFactory.buildPaymentUpdatedEvent(payment);
+    }
+
+    @Benchmark
+    public String signPayload() {
+        return signer.sign(payload);
+    }
+
+    @Benchmark
+    public PaymentStrategy factoryGetStrategy() {
+        return factory.getStrategy(MethodPayment.CARD);
+    }
+}
@@ -0,0 +1,36 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import edu.ucsal.fiadopay.infra.id.IdGenerator;
+import edu.ucsal.fiadopay.infra.id.UuidV7Generator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ids gerados por microssegundo com 64 threads disputando a mesma fonte.
+ * <p>
+ * {@code randomUuid} é o formato antigo ({@code "pay_" + UUID.randomUUID()},
+ * SecureRandom compartilhado); {@code uuidV7} é o {@link UuidV7Generator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    private final IdGenerator uuidV7 = new UuidV7Generator();
+
+    @Benchmark
+    public String randomUuid() {
+        return IdGenerator.PAYMENT + UUID.randomUUID();
+    }
+
+    @Benchmark
+    public String uuidV7() {
+        return uuidV7.next(IdGenerator.PAYMENT);
+    }
+}
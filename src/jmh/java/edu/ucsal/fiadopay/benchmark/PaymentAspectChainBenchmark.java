@@ -0,0 +1,130 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyAspect;
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
+import edu.ucsal.fiadopay.annotations.logged.LogAspect;
+import edu.ucsal.fiadopay.annotations.validTransactionWindow.TransactionWindowValidator;
+import edu.ucsal.fiadopay.annotations.validTransactionWindow.ValidTransactionWindowAspect;
+import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.infra.id.UuidV7Generator;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.domain.paymant.factory.PaymentFactoryImpl;
+import edu.ucsal.fiadopay.domain.paymant.strategy.CardPaymentStrategy;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.merchantService.MerchantService;
+import edu.ucsal.fiadopay.service.outbox.OutboxPublisher;
+import edu.ucsal.fiadopay.service.payment.PaymentProcessor;
+import edu.ucsal.fiadopay.service.payment.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * {@code PaymentService.createPayment} atrás da cadeia
+ * {@code @Logged -> @Idempotent -> @ValidTransactionWindow}, na mesma ordem
+ * dos aspectos em produção. Banco, processador e outbox são stubs sem
+ * custo, então o que sobra é a cadeia de proxies mais a estratégia.
+ * <p>
+ * {@code newKey} passa pela execução completa; {@code replayedKey} repete
+ * sempre a mesma Idempotency-Key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentAspectChainBenchmark {
+
+    private PaymentService proxy;
+    private MockHttpServletRequest httpRequest;
+    private MerchantSnapshot merchant;
+    private PaymentRequest request;
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.quietLogging();
+        var mapper = BenchmarkFixtures.objectMapper();
+        var ids = new UuidV7Generator();
+
+        PaymentRepository payments = mock(PaymentRepository.class, withSettings().stubOnly());
+        when(payments.findByIdempotencyKeyAndMerchantId(any(), any())).thenReturn(Optional.empty());
+        PaymentProcessor processor = mock(PaymentProcessor.class, withSettings().stubOnly());
+        MerchantService merchants = mock(MerchantService.class, withSettings().stubOnly());
+        when(merchants.getReference(any())).thenReturn(Merchant.builder().id(1L).build());
+
+        var strategy = new CardPaymentStrategy(mapper, ids);
+        merchant = BenchmarkFixtures.merchant();
+        request = BenchmarkFixtures.cardRequest();
+        // já decidido: depois da primeira leitura a repetição sai do cache, sem banco
+        var replayed = strategy.process(request, merchant, "idem-replay");
+        replayed.setStatus(Status.APPROVED);
+        when(payments.findById(any())).thenReturn(Optional.of(replayed));
+        var windowValidator = new TransactionWindowValidator();
+        var idempotency = new IdempotencyRegistry(10_000, 300);
+        var target = new PaymentService(
+                processor,
+                mock(OutboxPublisher.class, withSettings().stubOnly()),
+                merchants,
+                payments,
+                new PaymentFactoryImpl(List.of(strategy), EnumSet.of(MethodPayment.BOLETO, MethodPayment.TICKET), new SimpleMeterRegistry()),
+                ids,
+                windowValidator,
+                idempotency,
+                new TransactionTemplate(mock(PlatformTransactionManager.class, withSettings().stubOnly()))
+        );
+
+        var factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new LogAspect(new SimpleMeterRegistry()));
+        factory.addAspect(new IdempotencyAspect(payments, idempotency, 10_000));
+        factory.addAspect(new ValidTransactionWindowAspect(windowValidator));
+        proxy = factory.getProxy();
+
+        httpRequest = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(httpRequest));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(merchant, null, List.of()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public PaymentResponse newKey() {
+        String key = "idem-" + sequence++;
+        httpRequest.removeHeader("Idempotency-Key");
+        httpRequest.addHeader("Idempotency-Key", key);
+        return proxy.createPayment(merchant, key, request);
+    }
+
+    @Benchmark
+    public PaymentResponse replayedKey() {
+        httpRequest.removeHeader("Idempotency-Key");
+        httpRequest.addHeader("Idempotency-Key", "idem-replay");
+        return proxy.createPayment(merchant, "idem-replay", request);
+    }
+}
@@ -0,0 +1,123 @@
+package edu.ucsal.fiadopay.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.service.webhook.WebhookSender;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entregas de webhook por segundo contra um endpoint local que só responde 200.
+ * <p>
+ * {@code perCallBlockingClient} reproduz o envio antigo (um {@code HttpClient} novo
+ * por entrega, bloqueando uma das 8 threads do webhookExecutor);
+ * {@code sharedAsyncClient} usa o {@link WebhookSender} atual.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookDeliveryBenchmark {
+
+    private static final int DELIVERIES = 200;
+
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private ExecutorService webhookExecutor;
+    private HttpClient sharedClient;
+    private WebhookSender sender;
+    private WebhookDelivery delivery;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stubExecutor = Executors.newFixedThreadPool(16);
+        stub.setExecutor(stubExecutor);
+        stub.createContext("/webhook", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        stub.start();
+
+        webhookExecutor = Executors.newFixedThreadPool(8);
+        sharedClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        sender = new WebhookSender(sharedClient, 5000);
+
+        delivery = WebhookDelivery.builder()
+                .eventId("evt_bench")
+                .eventType("payment.updated")
+                .paymentId("pay_bench")
+                .targetUrl("http://127.0.0.1:" + stub.getAddress().getPort() + "/webhook")
+                .signature("c2lnbmF0dXJl")
+                .payload("{\"id\":\"evt_bench\",\"type\":\"payment.updated\",\"data\":{\"paymentId\":\"pay_bench\",\"status\":\"APPROVED\"}}"
+                        .getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        webhookExecutor.shutdownNow();
+        sharedClient.close();
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELIVERIES)
+    public int perCallBlockingClient() throws Exception {
+        Future<?>[] futures = new Future<?>[DELIVERIES];
+        for (int i = 0; i < DELIVERIES; i++) {
+            futures[i] = webhookExecutor.submit(() -> {
+                // fechado a cada entrega: sem isso selector threads e pools se
+                // acumulam durante a medição e distorcem a própria baseline
+                try (var client = HttpClient.newHttpClient()) {
+                    var req = HttpRequest.newBuilder(URI.create(delivery.getTargetUrl()))
+                            .header("Content-Type", "application/json")
+                            .header("X-Event-Type", delivery.getEventType())
+                            .header("X-Signature", delivery.getSignature())
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(delivery.getPayload()))
+                            .build();
+                    return client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode();
+                }
+            });
+        }
+        int ok = 0;
+        for (Future<?> f : futures) {
+            if ((int) f.get() == 200) ok++;
+        }
+        return ok;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELIVERIES)
+    public int sharedAsyncClient() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Boolean>[] futures = new CompletableFuture[DELIVERIES];
+        for (int i = 0; i < DELIVERIES; i++) {
+            futures[i] = sender.send(delivery);
+        }
+        int ok = 0;
+        for (CompletableFuture<Boolean> f : futures) {
+            if (f.join()) ok++;
+        }
+        return ok;
+    }
+}
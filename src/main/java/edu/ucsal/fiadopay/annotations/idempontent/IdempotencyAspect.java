@@ -1,18 +1,27 @@
 package edu.ucsal.fiadopay.annotations.idempontent;
 
-import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
 import edu.ucsal.fiadopay.domain.paymant.PaymentMapper;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
 import edu.ucsal.fiadopay.repo.PaymentRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Aspect
@@ -20,8 +29,19 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 @Order(2)
 public class IdempotencyAspect {
 
-    @Autowired
-    private PaymentRepository payments;
+    private final PaymentRepository payments;
+    private final IdempotencyRegistry registry;
+    private final long waitTimeoutMs;
+
+    public IdempotencyAspect(
+            PaymentRepository payments,
+            IdempotencyRegistry registry,
+            @Value("${fiadopay.idempotency.wait-timeout-ms:2000}") long waitTimeoutMs
+    ) {
+        this.payments = payments;
+        this.registry = registry;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
 
     @Around("@annotation(Idempotent)")
     public Object handleIdempotency(ProceedingJoinPoint pjp) throws Throwable {
@@ -36,11 +56,63 @@ public class IdempotencyAspect {
             return pjp.proceed();
 
         var auth = SecurityContextHolder.getContext().getAuthentication();
-        Merchant merchant = (Merchant) auth.getPrincipal();
+        MerchantSnapshot merchant = (MerchantSnapshot) auth.getPrincipal();
+        var key = new IdempotencyRegistry.Key(merchant.id(), idemKey);
 
-        log.info("🔁 Verificando idempotência merchantId={} idemKey={}", merchant.getId(), idemKey);
+        var cached = registry.responseFor(key);
+        if (cached != null) {
+            var replay = replay(key, cached);
+            if (replay != null) {
+                log.info("🔁 Request repetido — resposta em cache paymentId={} idemKey={}", replay.id(), idemKey);
+                return replay;
+            }
+        }
 
-        var existing = payments.findByIdempotencyKeyAndMerchantId(idemKey, merchant.getId());
+        // Single-flight: só a primeira requisição executa, as concorrentes
+        // com a mesma chave esperam o resultado dela.
+        var mine = new CompletableFuture<Object>();
+        var running = registry.claim(key, mine);
+        if (running != null) {
+            log.info("🔁 Execução em andamento — aguardando merchantId={} idemKey={}", merchant.id(), idemKey);
+            return await(running);
+        }
+
+        try {
+            Object result = lookupOrProceed(pjp, key);
+            if (result instanceof PaymentResponse response) {
+                registry.remember(key, response);
+            }
+            mine.complete(result);
+            return result;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            registry.release(key, mine);
+        }
+    }
+
+    // Decidido: sai do cache, que o processador mantém atualizado. Ainda PENDING:
+    // relê a linha, porque a decisão pode ter sido publicada antes de a resposta
+    // entrar no cache (ou por outra instância).
+    private PaymentResponse replay(IdempotencyRegistry.Key key, PaymentResponse cached) {
+        if (cached.status() != Status.PENDING) {
+            return cached;
+        }
+        var current = payments.findById(cached.id());
+        if (current.isEmpty()) {
+            registry.forget(key);
+            return null;
+        }
+        var response = PaymentMapper.toResponse(current.get());
+        registry.remember(key, response);
+        return response;
+    }
+
+    private Object lookupOrProceed(ProceedingJoinPoint pjp, IdempotencyRegistry.Key key) throws Throwable {
+        log.info("🔁 Verificando idempotência merchantId={} idemKey={}", key.merchantId(), key.idemKey());
+
+        var existing = payments.findByIdempotencyKeyAndMerchantId(key.idemKey(), key.merchantId());
 
         if (existing.isPresent()) {
             log.info("🔁 Request repetido — retornando pagamento existente paymentId={}", existing.get().getId());
@@ -50,4 +122,19 @@ public class IdempotencyAspect {
         log.info("🔁 Nenhuma operação anterior encontrada — prosseguindo execução.");
         return pjp.proceed();
     }
+
+    // Bloqueia a thread, mas só pelo tempo da criação (insert do pagamento e da
+    // outbox), não até a decisão do processador; o prazo curto limita quantas
+    // threads uma rajada de retries prende. O ?wait nem chega aqui: encadeia na
+    // execução em andamento pelo PaymentOutcomeRegistry.awaitInFlight.
+    private Object await(CompletableFuture<Object> running) throws Throwable {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with the same Idempotency-Key is still in progress");
+        }
+    }
 }
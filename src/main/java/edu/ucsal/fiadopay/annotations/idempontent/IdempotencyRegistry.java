@@ -0,0 +1,103 @@
+package edu.ucsal.fiadopay.annotations.idempontent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de idempotência compartilhado: quem está executando cada chave agora
+ * (single-flight) e a resposta do pagamento que cada chave já criou.
+ * Usado pelo aspecto em criações unitárias e item a item no lote.
+ * <p>
+ * A resposta guardada acompanha o status: o processador e o reembolso avisam
+ * cada mudança por {@link #statusChanged}, então a repetição sai daqui sem ir
+ * ao banco.
+ */
+@Component
+public class IdempotencyRegistry {
+
+    public record Key(Long merchantId, String idemKey) {}
+
+    private final Cache<Key, PaymentResponse> responses;
+    // paymentId -> chave, para achar a resposta quando o status muda
+    private final Cache<String, Key> keys;
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyRegistry(
+            @Value("${fiadopay.idempotency.cache-size:10000}") long cacheSize,
+            @Value("${fiadopay.idempotency.cache-ttl-seconds:300}") long cacheTtlSeconds
+    ) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
+    }
+
+    public PaymentResponse responseFor(Key key) {
+        return responses.getIfPresent(key);
+    }
+
+    // resposta antes do índice: um statusChanged que ache o índice sempre acha a resposta
+    public void remember(Key key, PaymentResponse response) {
+        responses.asMap().merge(key, response, IdempotencyRegistry::newer);
+        keys.put(response.id(), key);
+    }
+
+    public void forget(Key key) {
+        responses.invalidate(key);
+    }
+
+    /** Atualiza a resposta guardada do pagamento, se houver uma. */
+    public void statusChanged(String paymentId, Status status) {
+        var key = keys.getIfPresent(paymentId);
+        if (key == null) {
+            return;
+        }
+        responses.asMap().computeIfPresent(key, (k, current) -> current.id().equals(paymentId)
+                ? newer(current, current.withStatus(status))
+                : current);
+    }
+
+    // Avisos podem chegar fora de ordem (a aprovação publicada depois do
+    // reembolso): só vale o status que é uma transição a partir do guardado.
+    private static PaymentResponse newer(PaymentResponse current, PaymentResponse candidate) {
+        if (!current.id().equals(candidate.id())) {
+            return candidate;
+        }
+        for (PaymentTransition t : PaymentTransition.values()) {
+            if (t.target() == candidate.status() && t.allowedFrom(current.status())) {
+                return candidate;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reserva a chave para {@code mine}. Devolve null quando a reserva foi
+     * feita; senão, a execução que já está em andamento com a mesma chave.
+     */
+    public CompletableFuture<Object> claim(Key key, CompletableFuture<Object> mine) {
+        return inFlight.putIfAbsent(key, mine);
+    }
+
+    /** A execução em andamento com a chave, ou null. Não reserva nada. */
+    public CompletableFuture<Object> inFlight(Key key) {
+        return inFlight.get(key);
+    }
+
+    public void release(Key key, CompletableFuture<Object> mine) {
+        inFlight.remove(key, mine);
+    }
+}
@@ -1,44 +1,89 @@
 package edu.ucsal.fiadopay.annotations.logged;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Mede os métodos {@link Logged} num Timer {@code fiadopay.logged}
+ * (percentis e histograma, exportados em /actuator/prometheus), com tags
+ * {@code name} (valor da anotação), {@code method} e {@code outcome}.
+ * Os timers são criados uma vez por método e resultado; a chamada só paga
+ * o lookup no mapa e o record.
+ */
 @Aspect
 @Component
 @Slf4j
 @Order(1)
 public class LogAspect {
 
+    private record TimerKey(Method method, boolean success) {}
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public LogAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
     @Around("@annotation(logged)")
     public Object around(ProceedingJoinPoint pjp, Logged logged) throws Throwable {
 
-
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         try {
             Object result = pjp.proceed();
 
-            long time = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            timer(pjp, logged, true).record(nanos, TimeUnit.NANOSECONDS);
 
-            log.info("[{}] Executado em {}ms | args={}",
-                    logged.value(), time, Arrays.toString(pjp.getArgs()));
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Executado em {}ms", logged.value(), TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+            logArgs(pjp, logged);
 
             return result;
 
-        } catch (Exception e) {
+        } catch (Throwable e) {
 
-            long time = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            timer(pjp, logged, false).record(nanos, TimeUnit.NANOSECONDS);
 
-            log.error("[{}] Falhou em {}ms | erro={} | args={}",
-                    logged.value(), time, e.getMessage(), Arrays.toString(pjp.getArgs()));
+            log.warn("[{}] Falhou em {}ms | erro={}",
+                    logged.value(), TimeUnit.NANOSECONDS.toMillis(nanos), e.getMessage());
+            logArgs(pjp, logged);
 
             throw e;
         }
     }
+
+    private Timer timer(ProceedingJoinPoint pjp, Logged logged, boolean success) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        return timers.computeIfAbsent(new TimerKey(method, success), key -> Timer.builder("fiadopay.logged")
+                .description("Duração dos métodos anotados com @Logged")
+                .tag("name", logged.value().isEmpty() ? method.getName() : logged.value())
+                .tag("method", method.getDeclaringClass().getSimpleName() + "." + method.getName())
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private void logArgs(ProceedingJoinPoint pjp, Logged logged) {
+        if (!logged.logArgs() || ThreadLocalRandom.current().nextDouble() >= logged.argsSampleRate()) {
+            return;
+        }
+        log.info("[{}] args={}", logged.value(), LoggedArgs.render(pjp.getArgs()));
+    }
 }
@@ -9,4 +9,9 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Logged {
     String value() default "";
+
+    // Argumentos só vão para o log se pedido, numa fração das chamadas e já mascarados.
+    boolean logArgs() default false;
+
+    double argsSampleRate() default 0.01;
 }
@@ -0,0 +1,75 @@
+package edu.ucsal.fiadopay.annotations.logged;
+
+import java.lang.reflect.RecordComponent;
+import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renderiza argumentos para o log sem expor dados sensíveis.
+ * <p>
+ * Records viram {@code Nome[campo=valor, ...]} com os campos sensíveis
+ * mascarados; o resto aparece só pelo tipo. Nunca chama o {@code toString}
+ * dos objetos, que em entidades pode carregar relações ou segredos.
+ */
+final class LoggedArgs {
+
+    private static final Set<String> SENSITIVE = Set.of(
+            "details", "detailsjson", "password", "secret", "clientsecret", "clientsecrethash",
+            "token", "cardnumber", "cvv", "signature", "payload");
+
+    private static final int MAX_TEXT = 64;
+
+    private LoggedArgs() {}
+
+    static String render(Object[] args) {
+        var sb = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) sb.append(", ");
+            renderValue(sb, args[i], true);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static void renderValue(StringBuilder sb, Object value, boolean expand) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof CharSequence text) {
+            sb.append(text.length() > MAX_TEXT ? text.subSequence(0, MAX_TEXT) + "…" : text);
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Enum<?>
+                || value instanceof Temporal) {
+            sb.append(value);
+        } else if (value instanceof Collection<?> c) {
+            sb.append(value.getClass().getSimpleName()).append("(size=").append(c.size()).append(')');
+        } else if (value instanceof Map<?, ?> m) {
+            sb.append(value.getClass().getSimpleName()).append("(size=").append(m.size()).append(')');
+        } else if (expand && value instanceof Record) {
+            renderRecord(sb, value);
+        } else {
+            sb.append(value.getClass().getSimpleName());
+        }
+    }
+
+    // um nível só: records aninhados aparecem pelo tipo
+    private static void renderRecord(StringBuilder sb, Object record) {
+        sb.append(record.getClass().getSimpleName()).append('[');
+        RecordComponent[] components = record.getClass().getRecordComponents();
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) sb.append(", ");
+            String name = components[i].getName();
+            sb.append(name).append('=');
+            if (SENSITIVE.contains(name.toLowerCase(Locale.ROOT))) {
+                sb.append("***");
+                continue;
+            }
+            try {
+                renderValue(sb, components[i].getAccessor().invoke(record), false);
+            } catch (ReflectiveOperationException e) {
+                sb.append('?');
+            }
+        }
+        sb.append(']');
+    }
+}
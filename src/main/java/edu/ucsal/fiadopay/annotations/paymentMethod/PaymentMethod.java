@@ -1,5 +1,6 @@
 package edu.ucsal.fiadopay.annotations.paymentMethod;
 
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
 import org.springframework.stereotype.Component;
 
 import java.lang.annotation.ElementType;
@@ -11,6 +12,6 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Component
 public @interface PaymentMethod {
-   String type();
+   MethodPayment type();
 
 }
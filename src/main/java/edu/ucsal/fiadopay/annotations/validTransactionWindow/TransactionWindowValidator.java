@@ -0,0 +1,40 @@
+package edu.ucsal.fiadopay.annotations.validTransactionWindow;
+
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+/**
+ * Regra da janela de transação: acima de 10k só até as 22h.
+ * Usada pelo aspecto em criações unitárias e item a item no lote.
+ */
+@Slf4j
+@Component
+public class TransactionWindowValidator {
+
+    private static final BigDecimal LIMIT = new BigDecimal(10000);
+    private static final LocalTime CUTOFF = LocalTime.of(22, 0);
+
+    public void validate(PaymentRequest payment) {
+        boolean greaterThan10k = payment.amount().compareTo(LIMIT) > 0;
+
+        LocalTime now = LocalTime.now();
+        boolean isAfter10 = now.isAfter(CUTOFF);
+
+        log.info("⏱️ Validando janela de transação amount={} now={} greaterThan10k={} after22h={}",
+                payment.amount(), now, greaterThan10k, isAfter10);
+
+        if (greaterThan10k && isAfter10) {
+            log.warn("⛔ Transação bloqueada — valor acima de 10k após as 22h. amount={} time={}",
+                    payment.amount(), now);
+
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                    "Value above the limit allowed at this time.");
+        }
+    }
+}
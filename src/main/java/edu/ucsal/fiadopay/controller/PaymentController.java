@@ -1,41 +1,119 @@
 package edu.ucsal.fiadopay.controller;
 
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentResponse;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentPage;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
-import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.service.payment.PaymentExportService;
+import edu.ucsal.fiadopay.service.payment.PaymentOutcomeRegistry;
 import edu.ucsal.fiadopay.service.payment.PaymentService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import lombok.RequiredArgsConstructor;
 import jakarta.validation.Valid;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/fiadopay/gateway")
 @RequiredArgsConstructor
 public class PaymentController {
   private final PaymentService service;
+  private final PaymentExportService exportService;
+  private final PaymentOutcomeRegistry outcomes;
 
   @PostMapping("/payments")
   @SecurityRequirement(name = "bearerAuth")
   public ResponseEntity<PaymentResponse> create(
       @RequestHeader(value="Idempotency-Key", required=false) String idemKey,
       @RequestBody @Valid PaymentRequest req,
-      @AuthenticationPrincipal Merchant merchant
+      @AuthenticationPrincipal MerchantSnapshot merchant
   ) {
     var resp = service.createPayment(merchant,idemKey, req);
     return ResponseEntity.status(HttpStatus.CREATED).body(resp);
   }
 
+  // ?wait=N: responde quando o pagamento sai de PENDING ou após N segundos
+  // (o que vier antes). A thread do servlet é liberada durante a espera,
+  // inclusive quando outra requisição com a mesma Idempotency-Key ainda está criando.
+  @PostMapping(value = "/payments", params = "wait")
+  @SecurityRequirement(name = "bearerAuth")
+  public CompletableFuture<ResponseEntity<PaymentResponse>> createAndWait(
+      @RequestHeader(value="Idempotency-Key", required=false) String idemKey,
+      @RequestParam("wait") long waitSeconds,
+      @RequestBody @Valid PaymentRequest req,
+      @AuthenticationPrincipal MerchantSnapshot merchant
+  ) {
+    CompletableFuture<PaymentResponse> outcome = idemKey == null
+        ? null
+        : outcomes.awaitInFlight(merchant.id(), idemKey, waitSeconds);
+    if (outcome == null) {
+      outcome = outcomes.await(service.createPayment(merchant, idemKey, req), waitSeconds);
+    }
+    return outcome.thenApply(o -> ResponseEntity.status(HttpStatus.CREATED).body(o));
+  }
+
+  // 201 quando todos os itens deram certo; 207 quando algum falhou
+  // (o status de cada item vem no próprio resultado).
+  @PostMapping("/payments/batch")
+  @SecurityRequirement(name = "bearerAuth")
+  public ResponseEntity<BatchPaymentResponse> createBatch(
+      @RequestBody @Valid BatchPaymentRequest req,
+      @AuthenticationPrincipal MerchantSnapshot merchant
+  ) {
+    var resp = service.createPayments(merchant, req.items());
+    var status = resp.failed() > 0 ? HttpStatus.MULTI_STATUS : HttpStatus.CREATED;
+    return ResponseEntity.status(status).body(resp);
+  }
+
+  @GetMapping("/payments")
+  public PaymentPage list(
+      @AuthenticationPrincipal MerchantSnapshot merchant,
+      @RequestParam(required = false) Status status,
+      @RequestParam(required = false) MethodPayment method,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit
+  ) {
+    return service.listPayments(merchant, new PaymentFilter(status, method, from, to), cursor, limit);
+  }
+
+  @GetMapping("/payments/export")
+  public ResponseEntity<StreamingResponseBody> export(
+      @AuthenticationPrincipal MerchantSnapshot merchant,
+      @RequestParam(defaultValue = "ndjson") String format,
+      @RequestParam(required = false) Status status,
+      @RequestParam(required = false) MethodPayment method,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
+  ) {
+    var fmt = PaymentExportService.Format.parse(format);
+    var body = exportService.export(merchant, new PaymentFilter(status, method, from, to), fmt);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(fmt.contentType()))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments." + fmt.extension() + "\"")
+        .body(body);
+  }
+
   @GetMapping("/payments/{id}")
-  public PaymentResponse get( @AuthenticationPrincipal Merchant merchant, @PathVariable String id) {
+  public PaymentResponse get( @AuthenticationPrincipal MerchantSnapshot merchant, @PathVariable String id) {
     return service.getPayment(id, merchant);
   }
 
   @PostMapping("/refunds")
   @SecurityRequirement(name = "bearerAuth")
-  public java.util.Map<String,Object> refund(@AuthenticationPrincipal Merchant merchant,
+  public java.util.Map<String,Object> refund(@AuthenticationPrincipal MerchantSnapshot merchant,
                                    @RequestBody @Valid RefundRequest body) {
     return service.refund(merchant, body.paymentId());
   }
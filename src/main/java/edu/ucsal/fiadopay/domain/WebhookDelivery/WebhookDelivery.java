@@ -5,10 +5,14 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "webhook_table")
+@Table(name = "webhook_table", indexes = @Index(columnList = "delivered, nextAttemptAt"))
 @Data @NoArgsConstructor @AllArgsConstructor @Builder
 public class WebhookDelivery {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence com pooled optimizer: ids saem da memória em blocos de 50
+    // e o Hibernate consegue agrupar os inserts em lote (IDENTITY não deixa).
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_seq")
+    @SequenceGenerator(name = "webhook_seq", sequenceName = "webhook_seq", allocationSize = 50)
     private Long id;
 
     private String eventId;     // evt_xxx
@@ -19,7 +23,9 @@ public class WebhookDelivery {
     private int attempts;
     private boolean delivered;
     private Instant lastAttemptAt;
+    private Instant nextAttemptAt; // null quando entregue ou esgotado
+    private String leaseOwner;     // token do último claim do WebhookRetryScheduler
 
-    @Lob
-    private String payload;
+    @Column(columnDefinition = "bytea")
+    private byte[] payload;     // JSON UTF-8, exatamente o que foi assinado
 }
@@ -35,6 +35,9 @@ public class Merchant {
     @Column(nullable=false)
     private  Double interest;
 
+    // opt-in: webhooks da mesma janela vão num único envelope assinado
+    private boolean webhookBatching;
+
     @OneToMany(mappedBy = "merchant")
     private Set<Payment> payments = new HashSet();
 
@@ -0,0 +1,38 @@
+package edu.ucsal.fiadopay.domain.merchant;
+
+import edu.ucsal.fiadopay.domain.merchant.dto.Status;
+import lombok.Builder;
+
+/**
+ * Cópia imutável e sem associações JPA de um {@link Merchant}. É o que fica
+ * em cache, no SecurityContext e no caminho dos webhooks; o segredo guardado
+ * é o hash BCrypt, nunca o valor em claro.
+ */
+@Builder
+public record MerchantSnapshot(
+        Long id,
+        String name,
+        String clientId,
+        String clientSecretHash,
+        String webhookUrl,
+        Status status,
+        Double interest,
+        boolean webhookBatching
+) {
+    public static MerchantSnapshot of(Merchant merchant) {
+        return new MerchantSnapshot(
+                merchant.getId(),
+                merchant.getName(),
+                merchant.getClientId(),
+                merchant.getClientSecret(),
+                merchant.getWebhookUrl(),
+                merchant.getStatus(),
+                merchant.getInterest(),
+                merchant.isWebhookBatching()
+        );
+    }
+
+    public boolean isEnable() {
+        return status == Status.ACTIVE;
+    }
+}
@@ -7,5 +7,14 @@ import jakarta.validation.constraints.Size;
 public record MerchantCreate(
         @NotBlank @Size(max = 120) String name,
         @NotBlank String webhookUrl,
-        @NotNull Double interest
-) {}
+        @NotNull Double interest,
+        Boolean webhookBatching
+) {
+    public MerchantCreate(String name, String webhookUrl, Double interest) {
+        this(name, webhookUrl, interest, null);
+    }
+
+    public boolean batching() {
+        return Boolean.TRUE.equals(webhookBatching);
+    }
+}
@@ -10,12 +10,13 @@ public record MerchantRensponse(
         String webhookUrl,
         Status status,
         Double interest,
-        boolean enable
+        boolean enable,
+        boolean webhookBatching
 
 ) {
     public MerchantRensponse (Merchant merchant){
         this(merchant.getId(), merchant.getName(), merchant.getClientId(),
                 merchant.getClientSecret(), merchant.getWebhookUrl(), merchant.getStatus(),
-                    merchant.getInterest(),merchant.isEnable());
+                    merchant.getInterest(),merchant.isEnable(), merchant.isWebhookBatching());
     }
 }
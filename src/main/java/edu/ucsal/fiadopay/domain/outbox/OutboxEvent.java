@@ -0,0 +1,77 @@
+package edu.ucsal.fiadopay.domain.outbox;
+
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Evento de pagamento gravado na mesma transação da mudança de estado.
+ * A linha só sai da tabela depois que o {@code OutboxDrainer} terminou de
+ * despachá-la; se o processo cair antes, o lease vence e ela é retomada.
+ * Cada claim conta uma tentativa; passado {@code fiadopay.outbox.max-attempts}
+ * o evento fica estacionado ({@code parkedAt}) e sai da fila do drainer.
+ */
+@Entity
+@Table(name = "outbox_table", indexes = @Index(columnList = "leaseUntil, id"))
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class OutboxEvent {
+
+    public enum Type {
+        PAYMENT_CREATED,   // vai para o processador
+        PAYMENT_UPDATED    // vira webhook para o merchant
+    }
+
+    // Mesmo esquema de webhook_seq: blocos de 50 em memória, inserts em lote.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    @Column(nullable = false)
+    private String paymentId;
+
+    @Column(nullable = false)
+    private Long merchantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private Instant createdAt;   // instante da mudança de estado; ordena os estados de um pagamento
+
+    private Instant leaseUntil;   // null = livre; no passado = lease vencido
+
+    private String leaseOwner;    // token do claim que detém o lease
+
+    @Builder.Default
+    @Column(nullable = false)
+    private int attempts = 0;     // claims feitos até agora (incrementado no UPDATE do claim)
+
+    private Instant parkedAt;     // != null: desistiu depois de max-attempts; fica para inspeção
+
+    public static OutboxEvent paymentCreated(Payment p) {
+        return of(Type.PAYMENT_CREATED, p.getId(), p.getMerchant().getId(), p.getStatus());
+    }
+
+    public static OutboxEvent paymentUpdated(String paymentId, Long merchantId, Status status) {
+        return of(Type.PAYMENT_UPDATED, paymentId, merchantId, status);
+    }
+
+    private static OutboxEvent of(Type type, String paymentId, Long merchantId, Status status) {
+        return OutboxEvent.builder()
+                .type(type)
+                .paymentId(paymentId)
+                .merchantId(merchantId)
+                .status(status)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
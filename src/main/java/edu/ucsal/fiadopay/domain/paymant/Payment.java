@@ -3,6 +3,9 @@ package edu.ucsal.fiadopay.domain.paymant;
 import edu.ucsal.fiadopay.domain.merchant.Merchant;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
 
 
 import java.math.BigDecimal;
@@ -13,13 +16,17 @@ import java.util.Objects;
 @Data @NoArgsConstructor @AllArgsConstructor @Builder
 @Table(
         name = "payment_table",
-        indexes = { @Index(columnList="merchant_id"), @Index(columnList="status") },
+        indexes = {
+                @Index(columnList="merchant_id"),
+                @Index(columnList="status"),
+                @Index(columnList="merchant_id, createdAt, id") // listagem por cursor
+        },
         uniqueConstraints = {
                 @UniqueConstraint(name = "uk_payment_merchant_idempotency", columnNames = {"merchant_id", "idempotencyKey"})
         }
 )
 
-public class Payment {
+public class Payment implements Persistable<String> {
     @Id
     private String id; // pay_xxx
 
@@ -51,9 +58,36 @@ public class Payment {
     @Column(nullable = false)
     private Instant updatedAt;
 
+    // occurredAt do último estado enviado ao merchant; um estado mais antigo
+    // que chegue depois (reentrega da outbox, outra instância) é descartado
+    private Instant notifiedAt;
+
+    // JSON nativo: o texto é gravado como documento, não como string JSON
+    // escapada, e volta do banco pronto para ser embutido na resposta.
+    @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private String detailsJson;
 
+    // O id vem da estratégia, então o Spring Data não sabe se o pagamento é novo
+    // e o save() faria merge (um SELECT antes de cada INSERT). Nasce novo e
+    // deixa de ser assim que é gravado ou lido do banco.
+    @Transient
+    @Builder.Default
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private boolean newEntity = true;
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        this.newEntity = false;
+    }
+
     public boolean belongsToMerchant(Long id) {
         return Objects.equals(this.merchant.getId(), id);
     }
@@ -0,0 +1,37 @@
+package edu.ucsal.fiadopay.domain.paymant;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Transições permitidas de {@link Status}. Cada uma vira um único
+ * {@code UPDATE ... WHERE id = ? AND status IN (from)}: se o pagamento já
+ * saiu de {@code from}, nenhuma linha muda e quem chamou sabe que perdeu.
+ */
+public enum PaymentTransition {
+    APPROVE(Status.APPROVED, Status.PENDING),
+    DECLINE(Status.DECLINED, Status.PENDING),
+    EXPIRE(Status.EXPIRED, Status.PENDING),
+    FAIL(Status.PROCESSING_ERROR, Status.PENDING),
+    REFUND(Status.REFUNDED, Status.APPROVED);
+
+    private final Status target;
+    private final Set<Status> from;
+
+    PaymentTransition(Status target, Status first, Status... rest) {
+        this.target = target;
+        this.from = EnumSet.of(first, rest);
+    }
+
+    public Status target() {
+        return target;
+    }
+
+    public Set<Status> from() {
+        return from;
+    }
+
+    public boolean allowedFrom(Status status) {
+        return from.contains(status);
+    }
+}
@@ -0,0 +1,9 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+public record BatchPaymentItem(
+        @NotBlank @Size(max = 64) String idempotencyKey,
+        @NotNull @Valid PaymentRequest payment
+) {}
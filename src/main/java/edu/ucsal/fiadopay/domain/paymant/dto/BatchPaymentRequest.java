@@ -0,0 +1,12 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.util.List;
+
+public record BatchPaymentRequest(
+        @NotEmpty @Size(max = BatchPaymentRequest.MAX_ITEMS) List<@NotNull @Valid BatchPaymentItem> items
+) {
+    public static final int MAX_ITEMS = 100;
+}
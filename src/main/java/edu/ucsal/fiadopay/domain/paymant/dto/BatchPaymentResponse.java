@@ -0,0 +1,18 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+public record BatchPaymentResponse(int created, int replayed, int failed, List<BatchPaymentResult> results) {
+
+    public static BatchPaymentResponse of(List<BatchPaymentResult> results) {
+        int created = 0, replayed = 0, failed = 0;
+        for (BatchPaymentResult r : results) {
+            if (!r.succeeded()) failed++;
+            else if (r.status() == HttpStatus.CREATED.value()) created++;
+            else replayed++;
+        }
+        return new BatchPaymentResponse(created, replayed, failed, results);
+    }
+}
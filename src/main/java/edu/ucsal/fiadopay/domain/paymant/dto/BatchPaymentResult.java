@@ -0,0 +1,29 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import org.springframework.http.HttpStatus;
+
+// Resultado de um item do lote, na mesma posição do pedido.
+// payment vem preenchido quando deu certo, error quando falhou.
+public record BatchPaymentResult(
+        int index,
+        String idempotencyKey,
+        int status,
+        PaymentResponse payment,
+        String error
+) {
+    public static BatchPaymentResult created(int index, String idempotencyKey, PaymentResponse payment) {
+        return new BatchPaymentResult(index, idempotencyKey, HttpStatus.CREATED.value(), payment, null);
+    }
+
+    public static BatchPaymentResult replayed(int index, String idempotencyKey, PaymentResponse payment) {
+        return new BatchPaymentResult(index, idempotencyKey, HttpStatus.OK.value(), payment, null);
+    }
+
+    public static BatchPaymentResult failed(int index, String idempotencyKey, int status, String error) {
+        return new BatchPaymentResult(index, idempotencyKey, status, null, error);
+    }
+
+    public boolean succeeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,34 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Posição da última linha entregue ({@code createdAt}, {@code id}). Vai para
+ * o cliente como base64url opaco; a próxima página começa logo depois dela.
+ */
+public record PaymentCursor(Instant createdAt, String id) {
+
+    public static PaymentCursor after(PaymentSummary last) {
+        return new PaymentCursor(last.createdAt(), last.id());
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PaymentCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new PaymentCursor(Instant.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
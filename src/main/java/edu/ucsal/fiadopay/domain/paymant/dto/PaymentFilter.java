@@ -0,0 +1,9 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+
+import java.time.Instant;
+
+// Filtros opcionais da listagem; from é inclusivo, to é exclusivo.
+public record PaymentFilter(Status status, MethodPayment method, Instant from, Instant to) {}
@@ -0,0 +1,6 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import java.util.List;
+
+// nextCursor é null na última página.
+public record PaymentPage(List<PaymentSummary> items, String nextCursor) {}
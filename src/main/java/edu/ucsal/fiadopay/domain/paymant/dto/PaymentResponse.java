@@ -1,13 +1,21 @@
 package edu.ucsal.fiadopay.domain.paymant.dto;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
 import edu.ucsal.fiadopay.domain.paymant.Status;
+import io.swagger.v3.oas.annotations.media.Schema;
 
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.time.Instant;
 
 public record PaymentResponse(String id, BigDecimal amount, String currency,
                               MethodPayment method, Status status,
                                 Instant CreatedAt,
-                                Object details,
-                                String  metadataOrderId) {}
+                                @JsonRawValue
+                                @Schema(type = "object")
+                                String details,
+                                String  metadataOrderId) {
+
+    public PaymentResponse withStatus(Status status) {
+        return new PaymentResponse(id, amount, currency, method, status, CreatedAt, details, metadataOrderId);
+    }
+}
@@ -0,0 +1,12 @@
+package edu.ucsal.fiadopay.domain.paymant.dto;
+
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// Projeção usada na listagem: só colunas escalares, sem entidade nem details.
+public record PaymentSummary(String id, BigDecimal amount, String currency,
+                             MethodPayment method, Status status,
+                             Instant createdAt, String metadataOrderId) {}
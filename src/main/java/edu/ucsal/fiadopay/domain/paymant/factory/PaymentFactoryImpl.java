@@ -1,35 +1,95 @@
 package edu.ucsal.fiadopay.domain.paymant.factory;
 
 import edu.ucsal.fiadopay.annotations.paymentMethod.PaymentMethod;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
 import edu.ucsal.fiadopay.domain.paymant.strategy.PaymentStrategy;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class PaymentFactoryImpl implements PaymentFactory {
 
-    private final List<PaymentStrategy> strategies;
+    // Montados uma vez no boot; o despacho por requisição é só um get no EnumMap.
+    private final Map<MethodPayment, PaymentStrategy> strategies = new EnumMap<>(MethodPayment.class);
+    private final Map<MethodPayment, Counter> dispatches = new EnumMap<>(MethodPayment.class);
 
-    @Override
-    public PaymentStrategy getStrategy(String type) {
+    // disabled: métodos que ficam sem estratégia de propósito (respondem 400);
+    // qualquer outro sem estratégia impede o boot
+    public PaymentFactoryImpl(
+            List<PaymentStrategy> strategies,
+            @Value("${fiadopay.payment-methods.disabled:}") Set<MethodPayment> disabled,
+            MeterRegistry registry
+    ) {
+        for (PaymentStrategy strategy : strategies) {
+            // Beans podem ser proxies (AOP): a anotação fica na classe alvo.
+            Class<?> target = AopUtils.getTargetClass(strategy);
+            PaymentMethod annotation = AnnotationUtils.findAnnotation(target, PaymentMethod.class);
+            if (annotation == null) {
+                throw new IllegalStateException(
+                        "Strategy " + target.getName() + " has no @PaymentMethod annotation");
+            }
 
-        return strategies.stream()
-                .filter(s -> {
+            var previous = this.strategies.putIfAbsent(annotation.type(), strategy);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate strategy for " + annotation.type() + ": "
+                        + AopUtils.getTargetClass(previous).getName() + " and " + target.getName());
+            }
+            dispatches.put(annotation.type(), Counter.builder("fiadopay.payment.strategy.dispatch")
+                    .tag("method", annotation.type().name())
+                    .register(registry));
+        }
 
-                    var annotation = s.getClass().getAnnotation(PaymentMethod.class);
+        for (MethodPayment method : MethodPayment.values()) {
+            boolean registered = this.strategies.containsKey(method);
+            if (!registered && !disabled.contains(method)) {
+                throw new IllegalStateException("No strategy for payment method " + method
+                        + "; add one or list it in fiadopay.payment-methods.disabled");
+            }
+            if (registered && disabled.contains(method)) {
+                throw new IllegalStateException("Payment method " + method
+                        + " is disabled but has strategy " + AopUtils.getTargetClass(this.strategies.get(method)).getName());
+            }
+            if (!registered) {
+                log.info("Método de pagamento {} desabilitado", method);
+            }
+        }
+    }
 
-                    return annotation != null && annotation.type().equalsIgnoreCase(type);
-                })
-                .findFirst()
-                .orElseThrow(() ->
-                        new ResponseStatusException(
-                                HttpStatus.BAD_REQUEST,
-                                "type not supported"
-                        )
-                );
+    @Override
+    public PaymentStrategy getStrategy(MethodPayment method) {
+        PaymentStrategy strategy = method == null ? null : strategies.get(method);
+        if (strategy == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "type not supported"
+            );
+        }
+        dispatches.get(method).increment();
+        return strategy;
+    }
+
+    @Override
+    public PaymentStrategy getStrategy(String type) {
+        MethodPayment method;
+        try {
+            method = MethodPayment.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            method = null;
+        }
+        return getStrategy(method);
     }
 }
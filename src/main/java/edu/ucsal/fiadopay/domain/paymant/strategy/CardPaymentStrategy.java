@@ -3,40 +3,43 @@ package edu.ucsal.fiadopay.domain.paymant.strategy;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsal.fiadopay.annotations.paymentMethod.PaymentMethod;
-import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
 import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
 import edu.ucsal.fiadopay.domain.paymant.Status;
 import edu.ucsal.fiadopay.domain.paymant.details.CardDetails;
+import edu.ucsal.fiadopay.domain.paymant.details.CardDetailsRequest;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.infra.id.IdGenerator;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
-import java.util.UUID;
 
 @AllArgsConstructor
 @Component
-@PaymentMethod(type = "CARD")
+@PaymentMethod(type = MethodPayment.CARD)
 public class CardPaymentStrategy implements PaymentStrategy {
 
     private final ObjectMapper mapper;
+    private final IdGenerator ids;
 
 
 
     @Override
-    public Payment process(PaymentRequest req, Merchant merchant, String idemKey) {
+    public Payment process(PaymentRequest req, MerchantSnapshot merchant, String idemKey) {
 
         // 1. Extrair detalhes enviados pelo cliente
-        CardDetails cardReq = mapper.convertValue(req.details(), CardDetails.class);
-        int installments = cardReq.getInstallments();
+        int installments = readInstallments(req);
         BigDecimal baseAmount = req.amount();
 
         // 2. Calcular o valor final usando regras do merchant
         BigDecimal finalAmount = calculateFinalAmount(
-                merchant.getInterest(),
+                merchant.interest(),
                 installments,
                 baseAmount
         );
@@ -56,11 +59,10 @@ public class CardPaymentStrategy implements PaymentStrategy {
 
         // 4. Criar o pagamento
         Payment payment = new Payment();
-        payment.setId("pay_" + UUID.randomUUID());
+        payment.setId(ids.next(IdGenerator.PAYMENT));
         payment.setMethod(MethodPayment.CARD);
         payment.setAmount(baseAmount);
         payment.setCurrency(req.currency());
-        payment.setMerchant(merchant);
         payment.setIdempotencyKey(idemKey);
         payment.setStatus(Status.PENDING);
         payment.setCreatedAt(Instant.now());
@@ -76,6 +78,19 @@ public class CardPaymentStrategy implements PaymentStrategy {
     }
 
 
+    // sem details ou sem parcelas o cálculo quebra (NPE, divisão por zero):
+    // recusa antes com 422
+    private int readInstallments(PaymentRequest req) {
+        if (req.details() == null) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Card details are required");
+        }
+        Integer installments = mapper.convertValue(req.details(), CardDetailsRequest.class).installments();
+        if (installments == null || installments < 1) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "installments must be at least 1");
+        }
+        return installments;
+    }
+
     private BigDecimal calculateFinalAmount(
             Double interest,
             int installments,
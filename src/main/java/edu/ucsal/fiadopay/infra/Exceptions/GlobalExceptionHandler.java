@@ -1,10 +1,13 @@
 package edu.ucsal.fiadopay.infra.Exceptions;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
 
@@ -18,6 +21,43 @@ public class GlobalExceptionHandler {
             String path
     ) {}
 
+    // Backlog de processamento cheio: o cliente deve tentar de novo depois
+    @ExceptionHandler({ServiceOverloadedException.class})
+    public ResponseEntity<ErrorDetails> handleOverload(
+            ServiceOverloadedException ex,
+            HttpServletRequest request
+    ) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE; // 503
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ErrorDetails(
+                        Instant.now(),
+                        status,
+                        ex.getClass().getSimpleName(),
+                        ex.getMessage(),
+                        request.getRequestURI()
+                ));
+    }
+
+    // Status escolhido por quem lançou (400 de cursor/formato, 422 de validação,
+    // 404/403 de posse...): mais específico que o handler de RuntimeException
+    @ExceptionHandler({ResponseStatusException.class})
+    public ResponseEntity<ErrorDetails> handleResponseStatus(
+            ResponseStatusException ex,
+            HttpServletRequest request
+    ) {
+        HttpStatusCode status = ex.getStatusCode();
+        return ResponseEntity.status(status)
+                .headers(ex.getHeaders())
+                .body(new ErrorDetails(
+                        Instant.now(),
+                        HttpStatus.resolve(status.value()),
+                        ex.getClass().getSimpleName(),
+                        ex.getReason(),
+                        request.getRequestURI()
+                ));
+    }
+
     @ExceptionHandler({RuntimeException.class})
     public ResponseEntity<ErrorDetails> handleConflictExceptions(
             RuntimeException ex,
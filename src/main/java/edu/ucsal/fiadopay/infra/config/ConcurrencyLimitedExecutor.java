@@ -0,0 +1,108 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor de uma thread virtual por tarefa com um teto opcional de tarefas
+ * rodando ao mesmo tempo. A espera pela permissão acontece dentro da thread
+ * virtual, então não prende nenhuma thread de plataforma.
+ * <p>
+ * Com {@code maxQueued > 0}, tarefas além desse número esperando permissão
+ * são recusadas pelo {@code rejectionHandler}, como numa fila limitada. Sem
+ * teto de concorrência nada espera permissão, então o limite vale para o
+ * total de tarefas ainda não terminadas (na fila + rodando).
+ */
+public class ConcurrencyLimitedExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final RejectedExecutionHandler rejectionHandler;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public ConcurrencyLimitedExecutor(ExecutorService delegate, int maxConcurrency) {
+        this(delegate, maxConcurrency, 0, null);
+    }
+
+    public ConcurrencyLimitedExecutor(ExecutorService delegate, int maxConcurrency,
+                                      int maxQueued, RejectedExecutionHandler rejectionHandler) {
+        this.delegate = delegate;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        this.maxQueued = maxQueued;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        int waiting = queued.incrementAndGet();
+        int backlog = permits == null ? waiting + active.get() : waiting;
+        if (maxQueued > 0 && backlog > maxQueued) {
+            queued.decrementAndGet();
+            rejectionHandler.rejectedExecution(command, null);
+            return;
+        }
+        try {
+            delegate.execute(() -> {
+                if (permits != null) {
+                    permits.acquireUninterruptibly();
+                }
+                // nessa ordem: a tarefa nunca some das duas contagens ao mesmo tempo
+                active.incrementAndGet();
+                queued.decrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /** Tarefas esperando permissão. */
+    public int queued() {
+        return queued.get();
+    }
+
+    /** Tarefas rodando agora. */
+    public int active() {
+        return active.get();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
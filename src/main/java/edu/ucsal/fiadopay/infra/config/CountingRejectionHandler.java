@@ -0,0 +1,33 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Fila cheia: conta a rejeição em {@code fiadopay.executor.rejected} e lança
+ * {@link RejectedExecutionException}. Quem submete decide o que fazer com a
+ * tarefa (adiar, devolver para o banco), nada é descartado em silêncio.
+ */
+public class CountingRejectionHandler implements RejectedExecutionHandler {
+
+    private final String name;
+    private final Counter rejected;
+
+    public CountingRejectionHandler(String name, MeterRegistry registry) {
+        this.name = name;
+        this.rejected = Counter.builder("fiadopay.executor.rejected")
+                .description("Tarefas recusadas porque a fila do executor estava cheia")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        rejected.increment();
+        throw new RejectedExecutionException("Executor " + name + " saturado");
+    }
+}
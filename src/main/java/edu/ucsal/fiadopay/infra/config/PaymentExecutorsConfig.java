@@ -1,24 +1,88 @@
 package edu.ucsal.fiadopay.infra.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class PaymentExecutorsConfig {
 
+    // Mesma chave que liga threads virtuais no Tomcat (Spring Boot 3.2+).
+    @Value("${spring.threads.virtual.enabled:false}")
+    boolean virtualThreads;
+
     @Bean(name = "paymentExecutor")
     public ExecutorService paymentExecutor(
-            @Value("${fiadopay.payment-threads:4}") int threads) {
-        return Executors.newFixedThreadPool(threads);
+            @Value("${fiadopay.payment-threads:4}") int threads,
+            @Value("${fiadopay.payment-max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${fiadopay.payment-queue-capacity:1000}") int queueCapacity,
+            MeterRegistry registry) {
+        return executor("paymentExecutor", "payment", threads, maxConcurrency, queueCapacity, registry);
     }
 
     @Bean(name = "webhookExecutor")
     public ExecutorService webhookExecutor(
-            @Value("${fiadopay.webhook-threads:8}") int threads) {
-        return Executors.newFixedThreadPool(threads);
+            @Value("${fiadopay.webhook-threads:8}") int threads,
+            @Value("${fiadopay.webhook-max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${fiadopay.webhook-queue-capacity:5000}") int queueCapacity,
+            MeterRegistry registry) {
+        return executor("webhookExecutor", "webhook", threads, maxConcurrency, queueCapacity, registry);
+    }
+
+    // Só agenda: a decisão do adquirente roda no paymentExecutor quando o prazo vence.
+    @Bean(name = "paymentTimer")
+    public ScheduledExecutorService paymentTimer() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Flush do write-behind de webhook_table; fora do scheduler do Spring para
+    // que drains e varreduras não atrasem o max-delay-ms.
+    @Bean(name = "webhookWriterTimer")
+    public ScheduledExecutorService webhookWriterTimer() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "webhook-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Fila limitada nos dois modos: passando da capacidade a tarefa é recusada
+    // (e contada) em vez de acumular no heap. Profundidade da fila e threads
+    // ativas saem como executor.queued / executor.active com tag name.
+    private ExecutorService executor(String name, String prefix, int threads, int maxConcurrency,
+                                     int queueCapacity, MeterRegistry registry) {
+        var rejection = new CountingRejectionHandler(name, registry);
+        if (virtualThreads) {
+            var factory = Thread.ofVirtual().name(prefix + "-vt-", 0).factory();
+            var executor = new ConcurrencyLimitedExecutor(Executors.newThreadPerTaskExecutor(factory),
+                    maxConcurrency, queueCapacity, rejection);
+            Gauge.builder("executor.queued", executor, ConcurrencyLimitedExecutor::queued)
+                    .tag("name", name).register(registry);
+            Gauge.builder("executor.active", executor, ConcurrencyLimitedExecutor::active)
+                    .tag("name", name).register(registry);
+            return executor;
+        }
+
+        var pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name(prefix + "-", 0).factory(),
+                rejection);
+        new ExecutorServiceMetrics(pool, name, Tags.empty()).bindTo(registry);
+        return pool;
     }
 }
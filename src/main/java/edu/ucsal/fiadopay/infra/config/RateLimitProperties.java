@@ -0,0 +1,58 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limite de requisições por merchant no gateway.
+ * <pre>
+ * fiadopay.rate-limit:
+ *   rate: 50        # requisições por segundo, em regime
+ *   burst: 100      # rajada permitida acima do regime
+ *   merchants:      # exceções por clientId
+ *     abc123: { rate: 500, burst: 1000 }
+ * </pre>
+ * Valores inválidos (rate &lt;= 0, burst &lt; 1), inclusive nas exceções,
+ * impedem o boot: com eles o cálculo do GCRA estoura e a admissão quebra.
+ */
+@Data
+@Component
+@Validated
+@ConfigurationProperties("fiadopay.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    @Positive
+    private double rate = 50;
+    @Min(1)
+    private int burst = 100;
+    @Valid
+    private Map<String, Limit> merchants = new HashMap<>();
+
+    @Data
+    public static class Limit {
+        @Positive
+        private double rate;
+        @Min(1)
+        private int burst;
+    }
+
+    public Limit limitFor(String clientId) {
+        var custom = merchants.get(clientId);
+        if (custom != null) {
+            return custom;
+        }
+        var limit = new Limit();
+        limit.setRate(rate);
+        limit.setBurst(burst);
+        return limit;
+    }
+}
@@ -3,6 +3,8 @@ package edu.ucsal.fiadopay.infra.config;
 
 import edu.ucsal.fiadopay.infra.filters.JwtAuthentucationFIlter;
 import edu.ucsal.fiadopay.infra.filters.MerchantAuthenticationFilter;
+import edu.ucsal.fiadopay.infra.filters.MerchantRateLimitFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,6 +24,7 @@ public class SecurityConfig {
 
     private final JwtAuthentucationFIlter jwtAuthFilter;
     private final MerchantAuthenticationFilter merchantAuthenticationFilter;
+    private final MerchantRateLimitFilter merchantRateLimitFilter;
 
     @Bean
     @Order(1)
@@ -47,9 +50,12 @@ public class SecurityConfig {
                 .securityMatcher("/fiadopay/gateway/**")
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // redespacho de respostas assíncronas (?wait=N): a requisição já foi autorizada
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .anyRequest().authenticated()
                 )
-                .addFilterBefore(merchantAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(merchantAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(merchantRateLimitFilter, MerchantAuthenticationFilter.class);
 
         return http.build();
     }
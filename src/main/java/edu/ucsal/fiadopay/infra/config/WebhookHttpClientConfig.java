@@ -0,0 +1,24 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class WebhookHttpClientConfig {
+
+    // Um único cliente para toda a aplicação: o pool de conexões (keep-alive,
+    // HTTP/2 quando o endpoint suporta) é compartilhado entre as entregas.
+    @Bean(name = "webhookHttpClient")
+    public HttpClient webhookHttpClient(
+            @Value("${fiadopay.webhook-connect-timeout-ms:2000}") long connectTimeoutMs) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+}
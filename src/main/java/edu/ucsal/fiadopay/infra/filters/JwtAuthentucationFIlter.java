@@ -1,5 +1,6 @@
 package edu.ucsal.fiadopay.infra.filters;
 
+import edu.ucsal.fiadopay.service.securityService.TokenClaims;
 import edu.ucsal.fiadopay.service.securityService.TokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -7,23 +8,21 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 @Component
 public class JwtAuthentucationFIlter extends OncePerRequestFilter {
 
     private final TokenService tokenService;
-    private final UserDetailsService userDetailsService;
 
-    public JwtAuthentucationFIlter(TokenService tokenService, UserDetailsService userDetailsService) {
+    public JwtAuthentucationFIlter(TokenService tokenService) {
         this.tokenService = tokenService;
-        this.userDetailsService = userDetailsService;
     }
 
     @Override
@@ -51,20 +50,16 @@ public class JwtAuthentucationFIlter extends OncePerRequestFilter {
         String token = authHeader.substring(7);
 
         try {
-            String username = tokenService.extractUsername(token);
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                TokenClaims claims = tokenService.verify(token);
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UsernamePasswordAuthenticationToken authToken =
+                        new UsernamePasswordAuthenticationToken(
+                                claims.subject(), null, List.of(new SimpleGrantedAuthority(claims.role()))
+                        );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                if (tokenService.isTokenValid(token, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails, null, userDetails.getAuthorities()
-                            );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
 
         } catch (Exception e) {
@@ -1,6 +1,6 @@
 package edu.ucsal.fiadopay.infra.filters;
 
-import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
 
 import edu.ucsal.fiadopay.service.merchantService.MerchantService;
 import jakarta.servlet.FilterChain;
@@ -48,7 +48,7 @@ public class MerchantAuthenticationFilter extends OncePerRequestFilter {
                 }
                 String clientId = parts[0];
                 String clientSecret = parts[1];
-                Merchant merchant = merchantService.findAndVerifyByClientId(clientId, clientSecret);
+                MerchantSnapshot merchant = merchantService.findAndVerifyByClientId(clientId, clientSecret);
                 UsernamePasswordAuthenticationToken auth =
                         new UsernamePasswordAuthenticationToken(merchant, null, List.of());
 
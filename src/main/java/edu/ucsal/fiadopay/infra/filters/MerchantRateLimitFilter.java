@@ -0,0 +1,55 @@
+package edu.ucsal.fiadopay.infra.filters;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.service.merchantService.MerchantRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Roda logo depois do MerchantAuthenticationFilter: só limita quem já se identificou.
+@Slf4j
+@Component
+@AllArgsConstructor
+public class MerchantRateLimitFilter extends OncePerRequestFilter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final MerchantRateLimiter limiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (!request.getRequestURI().startsWith("/fiadopay/gateway")
+                || auth == null
+                || !(auth.getPrincipal() instanceof MerchantSnapshot merchant)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = limiter.tryAcquire(merchant.id(), merchant.clientId());
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+            log.warn("🚦 Limite de requisições excedido merchantId={} retryAfter={}s", merchant.id(), retryAfter);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\": \"Rate limit exceeded\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
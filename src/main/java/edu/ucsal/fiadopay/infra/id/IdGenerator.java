@@ -0,0 +1,20 @@
+package edu.ucsal.fiadopay.infra.id;
+
+import java.util.UUID;
+
+/**
+ * Fonte de ids públicos (pagamentos, estornos, eventos). Implementações devem
+ * gerar ids ordenados no tempo para manter os inserts no fim do índice.
+ */
+public interface IdGenerator {
+
+    String PAYMENT = "pay_";
+    String REFUND = "ref_";
+    String EVENT = "evt_";
+
+    UUID nextUuid();
+
+    default String next(String prefix) {
+        return prefix + nextUuid();
+    }
+}
@@ -0,0 +1,47 @@
+package edu.ucsal.fiadopay.infra.id;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUIDv7 (RFC 9562): 48 bits de epoch em ms, versão, 12 bits de contador
+ * (rand_a) e 62 bits aleatórios.
+ * <p>
+ * O contador fica num único {@link AtomicLong} ({@code ms << 12 | contador}),
+ * então os ids são estritamente crescentes neste processo, mesmo dentro do
+ * mesmo milissegundo ou se o relógio voltar. Os bits aleatórios vêm do
+ * {@link ThreadLocalRandom}, que não disputa lock como o SecureRandom do
+ * {@code UUID.randomUUID()}; os ids não são segredo, só precisam ser únicos.
+ */
+@Component
+public class UuidV7Generator implements IdGenerator {
+
+    private final AtomicLong lastStamp = new AtomicLong();
+
+    @Override
+    public UUID nextUuid() {
+        long stamp = nextStamp();
+        long msb = (stamp >>> 12) << 16      // unix_ts_ms
+                | 0x7000L                    // versão 7
+                | (stamp & 0xFFFL);          // contador
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL)
+                | 0x8000000000000000L;       // variante RFC
+        return new UUID(msb, lsb);
+    }
+
+    // Se o contador de 12 bits estourar, o próximo id "pega emprestado" o
+    // milissegundo seguinte; a ordem nunca quebra.
+    private long nextStamp() {
+        long now = System.currentTimeMillis() << 12;
+        while (true) {
+            long last = lastStamp.get();
+            long next = Math.max(now, last + 1);
+            if (lastStamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
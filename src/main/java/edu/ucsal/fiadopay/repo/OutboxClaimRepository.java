@@ -0,0 +1,15 @@
+package edu.ucsal.fiadopay.repo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+
+public interface OutboxClaimRepository {
+
+    /**
+     * Reserva os eventos até {@code leaseUntil} num único batch de UPDATEs
+     * condicionais, somando uma tentativa em cada um. Devolve os ids reservados; os que faltam já tinham sido
+     * pegos por outro drainer.
+     */
+    Set<Long> claim(Collection<Long> ids, Instant now, Instant leaseUntil);
+}
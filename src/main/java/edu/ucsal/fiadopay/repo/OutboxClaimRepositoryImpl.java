@@ -0,0 +1,60 @@
+package edu.ucsal.fiadopay.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Uma linha de batch por evento, marcando o lease com um token deste claim e
+// contando a tentativa.
+// Quem ficou com cada evento sai de um SELECT pelo token, não dos contadores
+// do batch (drivers podem devolver SUCCESS_NO_INFO sem dizer o que mudou).
+@RequiredArgsConstructor
+class OutboxClaimRepositoryImpl implements OutboxClaimRepository {
+
+    private static final String CLAIM = """
+            update outbox_table set lease_until = ?, lease_owner = ?, attempts = attempts + 1
+             where id = ? and (lease_until is null or lease_until <= ?)""";
+
+    private final JdbcTemplate jdbc;
+
+    @Override
+    @Transactional
+    public Set<Long> claim(Collection<Long> ids, Instant now, Instant leaseUntil) {
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Long> batch = List.copyOf(ids);
+        OffsetDateTime until = leaseUntil.atOffset(ZoneOffset.UTC);
+        OffsetDateTime at = now.atOffset(ZoneOffset.UTC);
+
+        String owner = UUID.randomUUID().toString();
+
+        jdbc.batchUpdate(CLAIM, batch, batch.size(), (ps, id) -> {
+            ps.setObject(1, until, Types.TIMESTAMP_WITH_TIMEZONE);
+            ps.setString(2, owner);
+            ps.setLong(3, id);
+            ps.setObject(4, at, Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+
+        // na mesma transação: enxerga os próprios UPDATEs, e um token novo por
+        // claim nunca coincide com o de outro drainer
+        String sql = "select id from outbox_table where lease_owner = ? and id in ("
+                + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+        var args = new ArrayList<Object>(batch.size() + 1);
+        args.add(owner);
+        args.addAll(batch);
+        return new HashSet<>(jdbc.queryForList(sql, Long.class, args.toArray()));
+    }
+}
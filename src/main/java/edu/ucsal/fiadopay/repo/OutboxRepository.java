@@ -0,0 +1,37 @@
+package edu.ucsal.fiadopay.repo;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long>, OutboxClaimRepository {
+
+    // Eventos livres (ou com lease vencido), em ordem de id. Estados seguintes do
+    // mesmo pagamento não esperam o anterior: o WebhookCoalescer junta os que
+    // caem na mesma janela e descarta, pelo notified_at do pagamento, um estado
+    // mais antigo que o último enviado. Estacionados ficam de fora.
+    @Query("select o from OutboxEvent o "
+            + "where o.parkedAt is null and (o.leaseUntil is null or o.leaseUntil <= :now) "
+            + "order by o.id")
+    List<OutboxEvent> findClaimable(@Param("now") Instant now, Pageable page);
+
+    // Backlog ainda sem drainer: o que já tem lease está com quem o reservou.
+    @Query("select count(o) from OutboxEvent o "
+            + "where o.type = :type and o.parkedAt is null "
+            + "and (o.leaseUntil is null or o.leaseUntil <= :now)")
+    long countClaimable(@Param("type") OutboxEvent.Type type, @Param("now") Instant now);
+
+    // Desiste dos eventos sem apagá-los: saem da fila e ficam para inspeção.
+    @Modifying
+    @Transactional
+    @Query("update OutboxEvent o set o.parkedAt = :now, o.leaseUntil = null, o.leaseOwner = null "
+            + "where o.id in :ids")
+    int park(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+}
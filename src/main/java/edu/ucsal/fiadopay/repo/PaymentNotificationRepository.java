@@ -0,0 +1,16 @@
+package edu.ucsal.fiadopay.repo;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+public interface PaymentNotificationRepository {
+
+    /**
+     * Avança {@code notified_at} de cada pagamento para o {@code occurredAt}
+     * do estado prestes a ser enviado, num único batch de UPDATEs condicionais.
+     * Devolve os ids em que o estado não é mais antigo que o último enviado;
+     * os que faltam já foram superados.
+     */
+    Set<String> markNotified(Map<String, Instant> occurredAt);
+}
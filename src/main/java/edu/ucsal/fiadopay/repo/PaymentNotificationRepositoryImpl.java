@@ -0,0 +1,62 @@
+package edu.ucsal.fiadopay.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Uma linha de batch por pagamento. Quem venceu sai de um SELECT do valor final,
+// não dos contadores do batch: a linha que tem exatamente o nosso occurredAt
+// foi avançada por nós (ou por uma reentrega do mesmo estado, que também passa).
+@RequiredArgsConstructor
+class PaymentNotificationRepositoryImpl implements PaymentNotificationRepository {
+
+    private static final String MARK = """
+            update payment_table set notified_at = ?
+             where id = ? and (notified_at is null or notified_at <= ?)""";
+
+    private final JdbcTemplate jdbc;
+
+    @Override
+    @Transactional
+    public Set<String> markNotified(Map<String, Instant> occurredAt) {
+        if (occurredAt.isEmpty()) {
+            return Collections.emptySet();
+        }
+        // na precisão da coluna, para a conferência achar exatamente este valor
+        var marks = new HashMap<String, OffsetDateTime>(occurredAt.size() * 2);
+        occurredAt.forEach((id, at) -> marks.put(id, at.truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC)));
+        List<String> ids = List.copyOf(marks.keySet());
+
+        jdbc.batchUpdate(MARK, ids, ids.size(), (ps, id) -> {
+            ps.setObject(1, marks.get(id), Types.TIMESTAMP_WITH_TIMEZONE);
+            ps.setString(2, id);
+            ps.setObject(3, marks.get(id), Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+
+        // na mesma transação: as linhas que o batch mudou estão travadas até o commit
+        String sql = "select id, notified_at from payment_table where id in ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        var accepted = new HashSet<String>();
+        jdbc.query(sql, (RowCallbackHandler) rs -> {
+            var at = rs.getObject(2, OffsetDateTime.class);
+            String id = rs.getString(1);
+            if (at != null && at.toInstant().equals(marks.get(id).toInstant())) {
+                accepted.add(id);
+            }
+        }, ids.toArray());
+        return accepted;
+    }
+}
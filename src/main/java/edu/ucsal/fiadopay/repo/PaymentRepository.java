@@ -1,7 +1,41 @@
 package edu.ucsal.fiadopay.repo;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import edu.ucsal.fiadopay.domain.paymant.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-public interface PaymentRepository extends JpaRepository<Payment, String> {
+public interface PaymentRepository extends JpaRepository<Payment, String>, PaymentSearchRepository, PaymentTransitionRepository,
+        PaymentNotificationRepository {
   Optional<Payment> findByIdempotencyKeyAndMerchantId(String ik, Long mid);
+  List<Payment> findByMerchantIdAndIdempotencyKeyIn(Long merchantId, Collection<String> keys);
+
+  // Transição de estado num único UPDATE condicional: 1 = venceu, 0 = o pagamento
+  // já não estava em nenhum estado de origem (ou é de outro merchant).
+  @Modifying
+  @Transactional
+  @Query("update Payment p set p.status = :target, p.updatedAt = :now where p.id = :id and p.status in :from")
+  int updateStatus(@Param("id") String id, @Param("from") Collection<Status> from,
+                   @Param("target") Status target, @Param("now") Instant now);
+
+  @Modifying
+  @Transactional
+  @Query("update Payment p set p.status = :target, p.updatedAt = :now "
+          + "where p.id = :id and p.merchant.id = :merchantId and p.status in :from")
+  int updateStatus(@Param("id") String id, @Param("merchantId") Long merchantId, @Param("from") Collection<Status> from,
+                   @Param("target") Status target, @Param("now") Instant now);
+
+  default boolean transition(String id, PaymentTransition t, Instant now) {
+    return updateStatus(id, t.from(), t.target(), now) == 1;
+  }
+
+  default boolean transition(String id, Long merchantId, PaymentTransition t, Instant now) {
+    return updateStatus(id, merchantId, t.from(), t.target(), now) == 1;
+  }
 }
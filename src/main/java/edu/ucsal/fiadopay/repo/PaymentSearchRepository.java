@@ -0,0 +1,24 @@
+package edu.ucsal.fiadopay.repo;
+
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentCursor;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentSummary;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface PaymentSearchRepository {
+
+    /**
+     * Pagamentos do merchant do mais novo para o mais antigo, começando logo
+     * depois de {@code after} (ou do início, se nulo).
+     */
+    List<PaymentSummary> search(Long merchantId, PaymentFilter filter, PaymentCursor after, int limit);
+
+    /**
+     * Todos os pagamentos do merchant que passam no filtro, do mais antigo
+     * para o mais novo, lidos do cursor JDBC em blocos de {@code fetchSize}.
+     * Precisa de uma transação aberta e deve ser fechado pelo chamador.
+     */
+    Stream<PaymentSummary> streamAll(Long merchantId, PaymentFilter filter, int fetchSize);
+}
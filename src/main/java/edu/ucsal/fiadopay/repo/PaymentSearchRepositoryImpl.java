@@ -0,0 +1,76 @@
+package edu.ucsal.fiadopay.repo;
+
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentCursor;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Keyset sobre o índice (merchant_id, createdAt, id): a página N custa o
+// mesmo que a primeira, porque não existe OFFSET para o banco pular.
+class PaymentSearchRepositoryImpl implements PaymentSearchRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<PaymentSummary> search(Long merchantId, PaymentFilter filter, PaymentCursor after, int limit) {
+        return query(merchantId, filter, after, "desc")
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<PaymentSummary> streamAll(Long merchantId, PaymentFilter filter, int fetchSize) {
+        // projeção não entra no contexto de persistência: a memória não cresce
+        // com o número de linhas, só com o fetch size do driver
+        return query(merchantId, filter, null, "asc")
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    private TypedQuery<PaymentSummary> query(Long merchantId, PaymentFilter filter, PaymentCursor after, String direction) {
+        var jpql = new StringBuilder("""
+                select new edu.ucsal.fiadopay.domain.paymant.dto.PaymentSummary(
+                    p.id, p.amount, p.currency, p.method, p.status, p.createdAt, p.metadataOrderId)
+                from Payment p
+                where p.merchant.id = :merchantId""");
+        Map<String, Object> params = new HashMap<>();
+        params.put("merchantId", merchantId);
+
+        if (filter.status() != null) {
+            jpql.append(" and p.status = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.method() != null) {
+            jpql.append(" and p.method = :method");
+            params.put("method", filter.method());
+        }
+        if (filter.from() != null) {
+            jpql.append(" and p.createdAt >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            jpql.append(" and p.createdAt < :to");
+            params.put("to", filter.to());
+        }
+        if (after != null) {
+            jpql.append(" and (p.createdAt < :cursorAt or (p.createdAt = :cursorAt and p.id < :cursorId))");
+            params.put("cursorAt", after.createdAt());
+            params.put("cursorId", after.id());
+        }
+        jpql.append(" order by p.createdAt ").append(direction).append(", p.id ").append(direction);
+
+        var query = em.createQuery(jpql.toString(), PaymentSummary.class);
+        params.forEach(query::setParameter);
+        return query;
+    }
+}
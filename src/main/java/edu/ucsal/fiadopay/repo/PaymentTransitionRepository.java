@@ -0,0 +1,16 @@
+package edu.ucsal.fiadopay.repo;
+
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+public interface PaymentTransitionRepository {
+
+    /**
+     * Aplica uma transição por pagamento num único batch JDBC e devolve os ids
+     * em que ela venceu (linha ainda estava num dos estados de origem).
+     */
+    Set<String> transitionAll(Map<String, PaymentTransition> transitions, Instant now);
+}
@@ -0,0 +1,90 @@
+package edu.ucsal.fiadopay.repo;
+
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// O JPQL de update não entra no batch do Hibernate; aqui cada transição é uma
+// linha de batch JDBC e o contador por linha diz quem venceu. Driver que não
+// informa o contador (SUCCESS_NO_INFO) não decide nada: essas linhas são
+// conferidas por um SELECT do estado final com o updated_at deste batch.
+@RequiredArgsConstructor
+class PaymentTransitionRepositoryImpl implements PaymentTransitionRepository {
+
+    private final JdbcTemplate jdbc;
+
+    @Override
+    @Transactional
+    public Set<String> transitionAll(Map<String, PaymentTransition> transitions, Instant now) {
+        if (transitions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        var byTransition = new EnumMap<PaymentTransition, List<String>>(PaymentTransition.class);
+        transitions.forEach((id, t) -> byTransition.computeIfAbsent(t, k -> new ArrayList<>()).add(id));
+
+        var won = new HashSet<String>();
+        // na precisão da coluna, para a conferência achar exatamente este valor
+        OffsetDateTime updatedAt = now.truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+        byTransition.forEach((transition, ids) -> {
+            String sql = "update payment_table set status = ?, updated_at = ? where id = ? and status in ("
+                    + transition.from().stream().map(s -> "'" + s.name() + "'").collect(Collectors.joining(","))
+                    + ")";
+            int[] counts = jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setString(1, transition.target().name());
+                    ps.setObject(2, updatedAt, Types.TIMESTAMP_WITH_TIMEZONE);
+                    ps.setString(3, ids.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return ids.size();
+                }
+            });
+            var unknown = new ArrayList<String>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 1) {
+                    won.add(ids.get(i));
+                } else if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                    unknown.add(ids.get(i));
+                }
+            }
+            if (!unknown.isEmpty()) {
+                won.addAll(confirm(transition, unknown, updatedAt));
+            }
+        });
+        return won;
+    }
+
+    // Na mesma transação: a linha que este batch mudou está travada até o commit,
+    // então quem tem o estado alvo com o nosso updated_at foi mudado por nós.
+    private List<String> confirm(PaymentTransition transition, List<String> ids, OffsetDateTime updatedAt) {
+        String sql = "select id from payment_table where status = ? and updated_at = ? and id in ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        var args = new ArrayList<Object>(ids.size() + 2);
+        args.add(transition.target().name());
+        args.add(updatedAt);
+        args.addAll(ids);
+        return jdbc.queryForList(sql, String.class, args.toArray());
+    }
+}
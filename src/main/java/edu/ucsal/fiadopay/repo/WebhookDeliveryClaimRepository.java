@@ -0,0 +1,16 @@
+package edu.ucsal.fiadopay.repo;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+
+public interface WebhookDeliveryClaimRepository {
+
+    /**
+     * Reserva as entregas vencidas até {@code leaseUntil} num único batch de
+     * UPDATEs condicionais, gravado na hora (sem passar pelo write-behind).
+     * Devolve os ids reservados; os que faltam já tinham sido pegos por outra
+     * instância ou deixaram de estar vencidos.
+     */
+    Set<Long> claim(Collection<Long> ids, Instant now, Instant leaseUntil);
+}
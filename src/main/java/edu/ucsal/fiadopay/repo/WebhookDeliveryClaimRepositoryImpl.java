@@ -0,0 +1,57 @@
+package edu.ucsal.fiadopay.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Mesmo esquema do OutboxClaimRepositoryImpl: o lease avança next_attempt_at
+// com um token deste claim, e quem ficou com cada entrega sai de um SELECT
+// pelo token, não dos contadores do batch.
+@RequiredArgsConstructor
+class WebhookDeliveryClaimRepositoryImpl implements WebhookDeliveryClaimRepository {
+
+    private static final String CLAIM = """
+            update webhook_table set next_attempt_at = ?, lease_owner = ?
+             where id = ? and delivered = false and next_attempt_at <= ?""";
+
+    private final JdbcTemplate jdbc;
+
+    @Override
+    @Transactional
+    public Set<Long> claim(Collection<Long> ids, Instant now, Instant leaseUntil) {
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Long> batch = List.copyOf(ids);
+        OffsetDateTime until = leaseUntil.atOffset(ZoneOffset.UTC);
+        OffsetDateTime at = now.atOffset(ZoneOffset.UTC);
+
+        String owner = UUID.randomUUID().toString();
+
+        jdbc.batchUpdate(CLAIM, batch, batch.size(), (ps, id) -> {
+            ps.setObject(1, until, Types.TIMESTAMP_WITH_TIMEZONE);
+            ps.setString(2, owner);
+            ps.setLong(3, id);
+            ps.setObject(4, at, Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+
+        String sql = "select id from webhook_table where lease_owner = ? and id in ("
+                + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+        var args = new ArrayList<Object>(batch.size() + 1);
+        args.add(owner);
+        args.addAll(batch);
+        return new HashSet<>(jdbc.queryForList(sql, Long.class, args.toArray()));
+    }
+}
@@ -1,4 +1,13 @@
 package edu.ucsal.fiadopay.repo;
 import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery, Long> { }
+
+import java.time.Instant;
+import java.util.List;
+
+public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery, Long>, WebhookDeliveryClaimRepository {
+    List<WebhookDelivery> findByDeliveredFalseAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(Instant now, Pageable page);
+
+    long countByDeliveredFalseAndNextAttemptAtNotNull();
+}
@@ -0,0 +1,124 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Cache das credenciais Basic já verificadas no gateway.
+ * <p>
+ * A chave é um HMAC-SHA256 de {@code clientId:secret} com uma chave aleatória
+ * gerada no boot, então o segredo em claro nunca fica guardado em memória.
+ * ClientIds desconhecidos vão para um cache negativo de vida curta.
+ */
+@Slf4j
+@Component
+public class MerchantCredentialCache {
+
+    private record Verified(String clientId, MerchantSnapshot merchant) {}
+
+    private final Cache<String, Verified> verified;
+    private final Cache<String, Boolean> unknown;
+    // Mac já inicializado com a chave do boot; cópias (clone) herdam o estado
+    // pronto sem repetir getInstance/init. Mesmo esquema do WebhookSigner.
+    private final Mac prototype;
+    private final ThreadLocal<Mac> macs;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter negativeHits;
+
+    public MerchantCredentialCache(
+            MeterRegistry registry,
+            @Value("${fiadopay.auth-cache.max-size:10000}") long maxSize,
+            @Value("${fiadopay.auth-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${fiadopay.auth-cache.negative-ttl-seconds:30}") long negativeTtlSeconds
+    ) {
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.unknown = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .build();
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        try {
+            this.prototype = Mac.getInstance("HmacSHA256");
+            this.prototype.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+        this.macs = ThreadLocal.withInitial(this::copy);
+
+        this.hits = Counter.builder("fiadopay.auth.cache").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("fiadopay.auth.cache").tag("result", "miss").register(registry);
+        this.negativeHits = Counter.builder("fiadopay.auth.cache").tag("result", "negative_hit").register(registry);
+    }
+
+    public MerchantSnapshot getVerified(String clientId, String clientSecret) {
+        var entry = verified.getIfPresent(keyOf(clientId, clientSecret));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.merchant();
+    }
+
+    public void putVerified(String clientId, String clientSecret, MerchantSnapshot merchant) {
+        unknown.invalidate(clientId);
+        verified.put(keyOf(clientId, clientSecret), new Verified(clientId, merchant));
+    }
+
+    public boolean isUnknown(String clientId) {
+        boolean known = unknown.getIfPresent(clientId) != null;
+        if (known) negativeHits.increment();
+        return known;
+    }
+
+    public void markUnknown(String clientId) {
+        unknown.put(clientId, Boolean.TRUE);
+    }
+
+    /**
+     * Remove todas as credenciais verificadas de um merchant. Deve ser chamado
+     * sempre que o merchant for bloqueado ou tiver o segredo trocado.
+     */
+    public void invalidate(String clientId) {
+        unknown.invalidate(clientId);
+        verified.asMap().values().removeIf(v -> v.clientId().equals(clientId));
+        log.debug("Credenciais em cache invalidadas clientId={}", clientId);
+    }
+
+    private String keyOf(String clientId, String clientSecret) {
+        // Threads virtuais são descartáveis: um ThreadLocal nunca seria reaproveitado.
+        Mac mac = Thread.currentThread().isVirtual() ? copy() : macs.get();
+        mac.update(clientId.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) ':');
+        return HexFormat.of().formatHex(mac.doFinal(clientSecret.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac copy() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Mac não suporta clone", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.repo.MerchantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Diretório em memória dos merchants, indexado por id e por clientId.
+ * <p>
+ * Toda escrita feita pelo {@link MerchantService} chama {@link #invalidate};
+ * o TTL é só uma rede de segurança para alterações feitas direto no banco.
+ */
+@Slf4j
+@Component
+public class MerchantDirectory {
+
+    private final MerchantRepository merchantRepository;
+    private final Cache<Long, MerchantSnapshot> byId;
+    private final Cache<String, MerchantSnapshot> byClientId;
+
+    public MerchantDirectory(
+            MerchantRepository merchantRepository,
+            MeterRegistry registry,
+            @Value("${fiadopay.merchant-directory.max-size:10000}") long maxSize,
+            @Value("${fiadopay.merchant-directory.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.merchantRepository = merchantRepository;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.byClientId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, byId, "merchant.directory.by_id");
+        CaffeineCacheMetrics.monitor(registry, byClientId, "merchant.directory.by_client_id");
+    }
+
+    public Optional<MerchantSnapshot> findById(Long id) {
+        var cached = byId.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return merchantRepository.findById(id).map(this::put);
+    }
+
+    public Optional<MerchantSnapshot> findByClientId(String clientId) {
+        var cached = byClientId.getIfPresent(clientId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return merchantRepository.findByClientId(clientId).map(this::put);
+    }
+
+    public void invalidate(Merchant merchant) {
+        if (merchant.getId() != null) byId.invalidate(merchant.getId());
+        if (merchant.getClientId() != null) byClientId.invalidate(merchant.getClientId());
+        log.debug("Merchant removido do diretório id={} clientId={}", merchant.getId(), merchant.getClientId());
+    }
+
+    private MerchantSnapshot put(Merchant merchant) {
+        var snapshot = MerchantSnapshot.of(merchant);
+        byId.put(snapshot.id(), snapshot);
+        byClientId.put(snapshot.clientId(), snapshot);
+        return snapshot;
+    }
+}
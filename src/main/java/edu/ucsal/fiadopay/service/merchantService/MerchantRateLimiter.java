@@ -0,0 +1,97 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsal.fiadopay.infra.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limite por merchant no formato GCRA: cada merchant (pelo id interno) é um único
+ * {@link AtomicLong} com o instante teórico da próxima chegada (TAT).
+ * Aceitar uma requisição é um CAS nesse valor, sem lock e sem thread de
+ * reposição de tokens.
+ * <p>
+ * Com taxa {@code r} e rajada {@code b}, cada requisição empurra o TAT em
+ * {@code 1/r}; ela é recusada quando o TAT ficaria mais de {@code b/r}
+ * à frente de agora. O excedente é exatamente o Retry-After.
+ * <p>
+ * O clientId só serve para achar a exceção em {@code rate-limit.merchants};
+ * baldes e métrica usam o id, porque o clientId é metade da credencial.
+ */
+@Component
+public class MerchantRateLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final class Bucket {
+        final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+        final long interval;
+        final long tolerance;
+        final Counter throttled;
+
+        Bucket(Long merchantId, RateLimitProperties.Limit limit) {
+            this.interval = (long) (NANOS_PER_SECOND / limit.getRate());
+            this.tolerance = interval * limit.getBurst();
+            this.throttled = Counter.builder("fiadopay.ratelimit.throttled")
+                    .description("Requisições recusadas com 429 pelo limite do merchant")
+                    .tag("merchant_id", String.valueOf(merchantId))
+                    .register(registry);
+        }
+
+        // 0 = aceita; senão, nanos até caber de novo
+        long acquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + interval;
+                long ahead = next - now;
+                if (ahead > tolerance) {
+                    throttled.increment();
+                    return ahead - tolerance;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private final RateLimitProperties properties;
+    private final LongSupplier clock;
+    private final MeterRegistry registry;
+    private final Cache<Long, Bucket> buckets;
+
+    @Autowired
+    public MerchantRateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+        this(properties, registry, System::nanoTime);
+    }
+
+    MerchantRateLimiter(RateLimitProperties properties, MeterRegistry registry, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.registry = registry;
+        // merchant parado some do mapa; ao voltar começa com o balde cheio
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        Gauge.builder("fiadopay.ratelimit.buckets", buckets, Cache::estimatedSize)
+                .description("Merchants com balde ativo")
+                .register(registry);
+    }
+
+    /** Nanos até a próxima requisição caber; 0 quando pode seguir. */
+    public long tryAcquire(Long merchantId, String clientId) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        var bucket = buckets.get(merchantId, id -> new Bucket(id, properties.limitFor(clientId)));
+        return bucket.acquire(clock.getAsLong());
+    }
+}
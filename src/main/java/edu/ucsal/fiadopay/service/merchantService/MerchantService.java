@@ -2,6 +2,7 @@ package edu.ucsal.fiadopay.service.merchantService;
 
 import edu.ucsal.fiadopay.domain.merchant.dto.MerchantCreate;
 import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
 import edu.ucsal.fiadopay.domain.merchant.dto.MerchantRensponse;
 import edu.ucsal.fiadopay.domain.merchant.dto.Status;
 import edu.ucsal.fiadopay.repo.MerchantRepository;
@@ -24,6 +25,8 @@ public class MerchantService {
     private MerchantRepository merchantRepository;
     private SecurityService securityService;
     private final PasswordEncoder passwordEncoder;
+    private final MerchantCredentialCache credentialCache;
+    private final MerchantDirectory merchantDirectory;
 
         public MerchantRensponse create(MerchantCreate dto) {
            var user = securityService.getAuthenticatedUserId();
@@ -37,6 +40,7 @@ public class MerchantService {
                     .interest(dto.interest())
                     .name(dto.name())
                     .webhookUrl(dto.webhookUrl())
+                    .webhookBatching(dto.batching())
                     .user(user)
                     .clientId("cli_"+UUID.randomUUID().toString())
                     .clientSecret("sec_"+UUID.randomUUID().toString().replace("-", ""))
@@ -45,25 +49,53 @@ public class MerchantService {
             var response = new MerchantRensponse(m);
             m.setClientSecret(passwordEncoder.encode(m.getClientSecret()));
             user.setMerchant(m);
-            merchantRepository.save(m);
+            save(m);
             return  response;
         }
 
-    public  Merchant findById(Long id){
-        return merchantRepository.findById(id)
+    public  MerchantSnapshot findById(Long id){
+        return merchantDirectory.findById(id)
                 .orElseThrow(()-> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Merchant not found"));
     }
 
+    // Referência (proxy) para associar ao pagamento sem carregar a linha do merchant.
+    public Merchant getReference(Long id) {
+        return merchantRepository.getReferenceById(id);
+    }
 
-    public Merchant findAndVerifyByClientId(String clientId, String clientSecret) {
-        var merchant = merchantRepository.findByClientId(clientId)
-                .orElseThrow(()-> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Merchant not found"));
-        if (!passwordEncoder.matches(clientSecret, merchant.getClientSecret())) {
+
+    public MerchantSnapshot findAndVerifyByClientId(String clientId, String clientSecret) {
+        var cached = credentialCache.getVerified(clientId, clientSecret);
+        if (cached != null) {
+            return cached;
+        }
+        if (credentialCache.isUnknown(clientId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Merchant not found");
+        }
+
+        var merchant = merchantDirectory.findByClientId(clientId)
+                .orElseThrow(()-> {
+                    credentialCache.markUnknown(clientId);
+                    return new ResponseStatusException(HttpStatus.BAD_REQUEST,"Merchant not found");
+                });
+        if (!passwordEncoder.matches(clientSecret, merchant.clientSecretHash())) {
             throw new RuntimeException("Invalid secret key");
         }
+        if (merchant.isEnable()) {
+            credentialCache.putVerified(clientId, clientSecret, merchant);
+        }
         return merchant;
     }
 
+    // Toda escrita de merchant passa por aqui para que status ou segredo
+    // alterados nunca continuem autenticando pelo cache.
+    private Merchant save(Merchant merchant) {
+        var saved = merchantRepository.save(merchant);
+        credentialCache.invalidate(merchant.getClientId());
+        merchantDirectory.invalidate(saved);
+        return saved;
+    }
+
     public String generateBasicToken(String clientId, String clientSecret) {
         String authString = clientId + ":" + clientSecret;
         return "Basic " + Base64.getEncoder().encodeToString(authString.getBytes(StandardCharsets.UTF_8));
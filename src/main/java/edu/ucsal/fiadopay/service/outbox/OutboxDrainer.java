@@ -0,0 +1,275 @@
+package edu.ucsal.fiadopay.service.outbox;
+
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.repo.OutboxRepository;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.merchantService.MerchantDirectory;
+import edu.ucsal.fiadopay.service.payment.PaymentProcessor;
+import edu.ucsal.fiadopay.service.webhook.PaymentUpdate;
+import edu.ucsal.fiadopay.service.webhook.WebhookCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Esvazia a outbox em lotes: uma consulta para os candidatos, um batch de
+ * UPDATEs para o lease, o despacho, e um DELETE para confirmar o lote.
+ * <p>
+ * Só é consultada quando o {@link OutboxPublisher} avisa que houve commit, ou a
+ * cada {@code idle-scan-ms} para retomar leases vencidos e sobras de um restart.
+ * Um evento só é removido depois de despachado; se algo falhar no meio, o lease
+ * vence e ele volta, então a entrega é at-least-once. Um evento reservado
+ * {@code max-attempts} vezes sem sucesso é estacionado em vez de voltar para
+ * sempre a cada lease.
+ */
+@Slf4j
+@Component
+public class OutboxDrainer {
+
+    private final OutboxRepository outbox;
+    private final OutboxPublisher publisher;
+    private final PaymentRepository payments;
+    private final MerchantDirectory merchants;
+    private final PaymentProcessor processor;
+    private final WebhookCoalescer coalescer;
+    private final int batchSize;
+    private final long leaseMs;
+    private final long idleScanMs;
+    private final int maxBatchesPerPoll;
+    private final int maxAttempts;
+
+    private long lastScanAt;
+    // o último poll parou no limite de lotes com a fila ainda cheia
+    private boolean backlog;
+
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+    private final Map<OutboxEvent.Type, Counter> drained = new EnumMap<>(OutboxEvent.Type.class);
+    private final Map<OutboxEvent.Type, Counter> failed = new EnumMap<>(OutboxEvent.Type.class);
+    private final Map<OutboxEvent.Type, Counter> parked = new EnumMap<>(OutboxEvent.Type.class);
+    private final Counter orphaned;
+
+    public OutboxDrainer(
+            OutboxRepository outbox,
+            OutboxPublisher publisher,
+            PaymentRepository payments,
+            MerchantDirectory merchants,
+            PaymentProcessor processor,
+            WebhookCoalescer coalescer,
+            MeterRegistry registry,
+            @Value("${fiadopay.outbox.batch-size:100}") int batchSize,
+            @Value("${fiadopay.outbox.lease-ms:30000}") long leaseMs,
+            @Value("${fiadopay.outbox.idle-scan-ms:1000}") long idleScanMs,
+            @Value("${fiadopay.outbox.max-batches-per-poll:10}") int maxBatchesPerPoll,
+            @Value("${fiadopay.outbox.max-attempts:10}") int maxAttempts
+    ) {
+        this.outbox = outbox;
+        this.publisher = publisher;
+        this.payments = payments;
+        this.merchants = merchants;
+        this.processor = processor;
+        this.coalescer = coalescer;
+        this.batchSize = batchSize;
+        this.leaseMs = leaseMs;
+        this.idleScanMs = idleScanMs;
+        this.maxBatchesPerPoll = maxBatchesPerPoll;
+        this.maxAttempts = maxAttempts;
+
+        this.lag = Timer.builder("fiadopay.outbox.lag")
+                .description("Tempo entre o commit do evento e a reserva pelo drainer")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("fiadopay.outbox.batch.size")
+                .description("Eventos reservados por lote")
+                .register(registry);
+        for (OutboxEvent.Type type : OutboxEvent.Type.values()) {
+            drained.put(type, Counter.builder("fiadopay.outbox.drained")
+                    .description("Eventos despachados e removidos da outbox")
+                    .tag("type", type.name())
+                    .register(registry));
+            failed.put(type, Counter.builder("fiadopay.outbox.failed")
+                    .description("Eventos cujo despacho falhou; voltam quando o lease vencer")
+                    .tag("type", type.name())
+                    .register(registry));
+            parked.put(type, Counter.builder("fiadopay.outbox.parked")
+                    .description("Eventos estacionados depois de max-attempts tentativas")
+                    .tag("type", type.name())
+                    .register(registry));
+        }
+        this.orphaned = Counter.builder("fiadopay.outbox.orphaned")
+                .description("PAYMENT_UPDATED confirmados sem webhook: merchant removido ou sem webhookUrl")
+                .register(registry);
+    }
+
+    // Um drainer por vez: dois lotes em paralelo disputariam os mesmos candidatos.
+    // No máximo max-batches-per-poll lotes por execução, para não prender a
+    // thread do scheduler; o que sobrar sai no próximo poll, sem esperar sinal.
+    @Scheduled(fixedDelayString = "${fiadopay.outbox.poll-ms:20}")
+    public synchronized void drain() {
+        long now = System.currentTimeMillis();
+        if (!backlog && !publisher.takeSignal() && now - lastScanAt < idleScanMs) {
+            return;
+        }
+        lastScanAt = now;
+
+        int count;
+        int batches = 0;
+        do {
+            count = drainBatch();
+        } while (count == batchSize && ++batches < maxBatchesPerPoll); // lote cheio: provavelmente há mais na fila
+        backlog = count == batchSize;
+    }
+
+    int drainBatch() {
+        Instant now = Instant.now();
+        var candidates = outbox.findClaimable(now, PageRequest.of(0, batchSize));
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        var claimed = outbox.claim(candidates.stream().map(OutboxEvent::getId).toList(),
+                now, now.plusMillis(leaseMs));
+
+        var created = new ArrayList<OutboxEvent>();
+        var updated = new ArrayList<OutboxEvent>();
+        var exhausted = new ArrayList<OutboxEvent>();
+        for (OutboxEvent e : candidates) {
+            if (!claimed.contains(e.getId())) {
+                continue;
+            }
+            // attempts foi lido antes do claim: esta é a tentativa attempts + 1
+            if (e.getAttempts() >= maxAttempts) {
+                exhausted.add(e);
+                continue;
+            }
+            lag.record(Duration.between(e.getCreatedAt(), now));
+            (e.getType() == OutboxEvent.Type.PAYMENT_CREATED ? created : updated).add(e);
+        }
+        batchSizes.record(claimed.size());
+        log.debug("Outbox: {} candidatos, {} reservados", candidates.size(), claimed.size());
+
+        park(exhausted, now);
+        dispatchCreated(created);
+        dispatchUpdated(updated);
+        return candidates.size();
+    }
+
+    // Pagamentos novos vão ao processador num único despacho; o evento sai da
+    // outbox só depois que a decisão (e o PAYMENT_UPDATED dela) foi commitada.
+    private void dispatchCreated(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Payment> batch;
+        try {
+            batch = payments.findAllById(events.stream().map(OutboxEvent::getPaymentId).toList());
+        } catch (Exception e) {
+            fail(events, e);
+            return;
+        }
+        if (batch.isEmpty()) {
+            ack(events);
+            return;
+        }
+        processor.processAll(batch).whenComplete((decided, e) -> {
+            if (e != null) {
+                fail(events, e);
+                return;
+            }
+            ack(events);
+        });
+    }
+
+    // Os estados vão para o coalescer; confirma de uma vez os que já estão
+    // cobertos por uma entrega gravada em webhook_table. Merchant removido (ou
+    // sem webhookUrl) não tem para onde enviar: confirma sem webhook, como o
+    // PAYMENT_CREATED cujo pagamento sumiu.
+    private void dispatchUpdated(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        CompletableFuture<OutboxEvent>[] scheduled = new CompletableFuture[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent e = events.get(i);
+            try {
+                var merchant = merchants.findById(e.getMerchantId());
+                if (merchant.isEmpty() || merchant.get().webhookUrl() == null) {
+                    log.info("Outbox: evento {} do pagamento {} sem destino (merchant {} removido ou sem webhookUrl)",
+                            e.getId(), e.getPaymentId(), e.getMerchantId());
+                    orphaned.increment();
+                    scheduled[i] = CompletableFuture.completedFuture(e);
+                    continue;
+                }
+                scheduled[i] = coalescer.submit(e.getMerchantId(),
+                                new PaymentUpdate(e.getPaymentId(), e.getStatus(), e.getCreatedAt()))
+                        .thenApply(v -> e);
+            } catch (Exception ex) {
+                scheduled[i] = CompletableFuture.failedFuture(ex);
+            }
+        }
+
+        CompletableFuture.allOf(scheduled).whenComplete((ignored, error) -> {
+            var done = new ArrayList<OutboxEvent>(events.size());
+            for (int i = 0; i < scheduled.length; i++) {
+                if (scheduled[i].isCompletedExceptionally()) {
+                    fail(List.of(events.get(i)), scheduled[i].exceptionNow());
+                } else {
+                    done.add(scheduled[i].join());
+                }
+            }
+            ack(done);
+        });
+    }
+
+    private void ack(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            outbox.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+            events.forEach(e -> drained.get(e.getType()).increment());
+        } catch (Exception e) {
+            log.error("Falha ao confirmar {} eventos da outbox; voltam quando o lease vencer: {}",
+                    events.size(), e.getMessage(), e);
+        }
+    }
+
+    private void park(List<OutboxEvent> events, Instant now) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            outbox.park(events.stream().map(OutboxEvent::getId).toList(), now);
+            for (OutboxEvent e : events) {
+                parked.get(e.getType()).increment();
+                log.error("Outbox: evento {} {} do pagamento {} estacionado depois de {} tentativas",
+                        e.getId(), e.getType(), e.getPaymentId(), e.getAttempts());
+            }
+        } catch (Exception e) {
+            log.error("Falha ao estacionar {} eventos da outbox; voltam quando o lease vencer: {}",
+                    events.size(), e.getMessage(), e);
+        }
+    }
+
+    private void fail(List<OutboxEvent> events, Throwable e) {
+        events.forEach(ev -> failed.get(ev.getType()).increment());
+        log.warn("Falha ao despachar {} evento(s) {} da outbox; nova tentativa em {} ms: {}",
+                events.size(), events.get(0).getType(), leaseMs, e.getMessage());
+    }
+}
@@ -0,0 +1,61 @@
+package edu.ucsal.fiadopay.service.outbox;
+
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
+import edu.ucsal.fiadopay.repo.OutboxRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Grava eventos na outbox dentro da transação de quem chamou: o evento existe
+ * se e somente se a mudança de estado foi commitada. Depois do commit avisa o
+ * drainer, que assim não precisa varrer a tabela a cada poll.
+ */
+@Component
+public class OutboxPublisher {
+
+    private final OutboxRepository outbox;
+    private final AtomicBoolean signalled = new AtomicBoolean();
+
+    public OutboxPublisher(OutboxRepository outbox) {
+        this.outbox = outbox;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEvent event) {
+        outbox.save(event);
+        signalAfterCommit();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        outbox.saveAll(events);
+        signalAfterCommit();
+    }
+
+    /** Avisa o drainer que há eventos novos ou liberados. */
+    public void signal() {
+        signalled.set(true);
+    }
+
+    boolean takeSignal() {
+        return signalled.getAndSet(false);
+    }
+
+    private void signalAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                signal();
+            }
+        });
+    }
+}
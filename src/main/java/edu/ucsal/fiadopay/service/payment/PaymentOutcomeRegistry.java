@@ -0,0 +1,123 @@
+package edu.ucsal.fiadopay.service.payment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentMapper;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ponto de encontro entre o processador e quem espera o resultado de um pagamento.
+ * <p>
+ * O processador publica a decisão assim que ela é gravada; quem espera recebe
+ * um future que completa com essa decisão ou, vencido o prazo, com a resposta
+ * ainda pendente. Nenhuma thread fica parada.
+ * Os resultados ficam guardados pelo prazo máximo de espera, então uma espera
+ * registrada depois da decisão também é atendida na hora. Depois desse prazo a
+ * entrada some: na primeira espera sem entrada o status é relido do banco, para
+ * não esperar à toa por um pagamento que já foi decidido.
+ * <p>
+ * Cada decisão também atualiza a resposta guardada pelo {@link IdempotencyRegistry},
+ * para a repetição da mesma Idempotency-Key não precisar reler o pagamento.
+ */
+@Component
+public class PaymentOutcomeRegistry {
+
+    private final PaymentRepository payments;
+    private final IdempotencyRegistry idempotency;
+    private final Cache<String, CompletableFuture<PaymentResponse>> outcomes;
+    private final long maxWaitSeconds;
+
+    public PaymentOutcomeRegistry(
+            PaymentRepository payments,
+            IdempotencyRegistry idempotency,
+            @Value("${fiadopay.payment-wait.max-seconds:30}") long maxWaitSeconds,
+            @Value("${fiadopay.payment-wait.max-entries:50000}") long maxEntries
+    ) {
+        this.payments = payments;
+        this.idempotency = idempotency;
+        this.maxWaitSeconds = maxWaitSeconds;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(maxWaitSeconds))
+                .build();
+    }
+
+    /** Chamado pelo processador com o pagamento já decidido e gravado. */
+    public void publish(Payment payment) {
+        if (payment == null) return;
+        outcomes.get(payment.getId(), id -> new CompletableFuture<>())
+                .complete(PaymentMapper.toResponse(payment));
+        idempotency.statusChanged(payment.getId(), payment.getStatus());
+    }
+
+    /**
+     * Completa com o status final de {@code created} ou, depois de
+     * {@code waitSeconds} (limitado a max-seconds), com o próprio {@code created}.
+     */
+    public CompletableFuture<PaymentResponse> await(PaymentResponse created, long waitSeconds) {
+        if (created.status() != Status.PENDING || waitSeconds <= 0) {
+            return CompletableFuture.completedFuture(created);
+        }
+        long timeout = Math.min(waitSeconds, maxWaitSeconds);
+        var registered = new boolean[1];
+        var outcome = outcomes.get(created.id(), id -> {
+            registered[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (registered[0]) {
+            // registra antes de ler: uma decisão publicada no meio completa o mesmo future
+            payments.findById(created.id())
+                    .filter(p -> p.getStatus() != Status.PENDING)
+                    .ifPresent(p -> outcome.complete(PaymentMapper.toResponse(p)));
+        }
+        // cópia: o timeout de um cliente não pode completar o future compartilhado
+        return outcome.copy()
+                .completeOnTimeout(created, timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * ?wait repetido enquanto a criação com a mesma Idempotency-Key ainda roda:
+     * em vez de segurar a thread no aspecto, encadeia na execução em andamento e
+     * depois espera a decisão como {@link #await}. Null quando não há execução
+     * em andamento (segue pelo caminho normal). Se a criação não terminar dentro
+     * da espera, responde 409 como o aspecto.
+     */
+    public CompletableFuture<PaymentResponse> awaitInFlight(Long merchantId, String idemKey, long waitSeconds) {
+        var running = idempotency.inFlight(new IdempotencyRegistry.Key(merchantId, idemKey));
+        if (running == null) {
+            return null;
+        }
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, Math.min(waitSeconds, maxWaitSeconds)));
+        long deadline = System.nanoTime() + timeoutNanos;
+        // cópia: o timeout deste cliente não pode completar a execução compartilhada
+        return running.copy()
+                .orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return (PaymentResponse) result;
+                    }
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        throw new ResponseStatusException(HttpStatus.CONFLICT,
+                                "A request with the same Idempotency-Key is still in progress");
+                    }
+                    throw new CompletionException(cause);
+                })
+                .thenCompose(created -> await(created,
+                        TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime())));
+    }
+}
@@ -1,38 +1,229 @@
 package edu.ucsal.fiadopay.service.payment;
-import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import edu.ucsal.fiadopay.infra.Exceptions.ServiceOverloadedException;
+import edu.ucsal.fiadopay.repo.OutboxRepository;
 import edu.ucsal.fiadopay.repo.PaymentRepository;
-import lombok.RequiredArgsConstructor;
+import edu.ucsal.fiadopay.service.outbox.OutboxPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class PaymentProcessor {
 
+    // fila do paymentExecutor cheia: a decisão volta para o timer e tenta de novo
+    private static final long REQUEUE_DELAY_MS = 100;
+
     @Value("${fiadopay.processing-delay-ms}")
     long delay;
 
     @Value("${fiadopay.failure-rate}")
     double failRate;
 
+    @Value("${fiadopay.payment-max-pending:5000}")
+    int maxPending;
+
+    @Value("${fiadopay.overload-retry-after-seconds:2}")
+    long retryAfterSeconds;
+
     private final PaymentRepository payments;
+    private final OutboxPublisher outbox;
+    private final OutboxRepository outboxEvents;
+    private final TransactionTemplate tx;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService paymentExecutor;
+    private final PaymentOutcomeRegistry outcomes;
+
+    // pagamentos aceitos e ainda sem decisão (no timer ou na fila do executor)
+    private final AtomicInteger pending = new AtomicInteger();
+    // PAYMENT_CREATED na outbox sem drainer ainda: aceitos, mas fora de pending.
+    // Amostrado a cada backlog-sample-ms; contar a cada requisição iria ao banco.
+    private final AtomicLong queued = new AtomicLong();
+    private final Counter shed;
+
+    public PaymentProcessor(
+            PaymentRepository payments,
+            OutboxPublisher outbox,
+            OutboxRepository outboxEvents,
+            TransactionTemplate tx,
+            @Qualifier("paymentTimer") ScheduledExecutorService timer,
+            @Qualifier("paymentExecutor") ExecutorService paymentExecutor,
+            PaymentOutcomeRegistry outcomes,
+            MeterRegistry registry
+    ) {
+        this.payments = payments;
+        this.outbox = outbox;
+        this.outboxEvents = outboxEvents;
+        this.tx = tx;
+        this.timer = timer;
+        this.paymentExecutor = paymentExecutor;
+        this.outcomes = outcomes;
+
+        Gauge.builder("fiadopay.payment.pending", pending, AtomicInteger::get)
+                .description("Pagamentos aguardando decisão do processador")
+                .register(registry);
+        Gauge.builder("fiadopay.payment.queued", queued, AtomicLong::get)
+                .description("Pagamentos criados que ainda esperam o drainer da outbox")
+                .register(registry);
+        this.shed = Counter.builder("fiadopay.payment.shed")
+                .description("Pagamentos recusados com 503 por backlog cheio")
+                .register(registry);
+    }
+
+    /**
+     * Recusa novos pagamentos quando o backlog passa de {@code payment-max-pending}.
+     * O backlog soma os pagamentos já com o processador e os que ainda esperam
+     * na outbox. Chamado antes de criar qualquer coisa, para que a recusa não
+     * deixe lixo.
+     */
+    public void ensureCapacity(int count) {
+        long backlog = pending.get() + queued.get();
+        if (backlog + count > maxPending) {
+            shed.increment(count);
+            log.warn("⛔ Backlog de processamento cheio pending={} queued={} max={} — recusando {} pagamento(s)",
+                    pending.get(), queued.get(), maxPending, count);
+            throw new ServiceOverloadedException("Payment processing backlog is full", retryAfterSeconds);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fiadopay.outbox.backlog-sample-ms:500}")
+    public void sampleBacklog() {
+        try {
+            queued.set(outboxEvents.countClaimable(OutboxEvent.Type.PAYMENT_CREATED, Instant.now()));
+        } catch (Exception e) {
+            // mantém a última amostra: melhor um número velho que nenhum
+            log.warn("Falha ao contar o backlog da outbox: {}", e.getMessage());
+        }
+    }
+
+    // Simula o adquirente: nenhuma thread fica presa durante o atraso, o timer
+    // só dispara a decisão no paymentExecutor quando ele vence.
+    // Completa com o pagamento já no status final, ou null se outra transição
+    // chegou antes. O webhook não sai daqui: a decisão grava um PAYMENT_UPDATED
+    // na outbox na mesma transação do UPDATE.
+    public CompletableFuture<Payment> process(Payment payment) {
+        return schedule(() -> decide(payment), 1);
+    }
+
+    // Lote inteiro num único agendamento e num único batch de updates.
+    // Completa só com os pagamentos cuja transição venceu.
+    public CompletableFuture<List<Payment>> processAll(List<Payment> batch) {
+        return schedule(() -> decideAll(batch), batch.size());
+    }
+
+    private <T> CompletableFuture<T> schedule(Supplier<T> decision, int count) {
+        var result = new CompletableFuture<T>();
+        pending.addAndGet(count);
+        result.whenComplete((r, e) -> pending.addAndGet(-count));
+        timer.schedule(() -> submit(decision, result), delay, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private <T> void submit(Supplier<T> decision, CompletableFuture<T> result) {
+        try {
+            paymentExecutor.execute(() -> complete(decision, result));
+        } catch (RejectedExecutionException e) {
+            if (paymentExecutor.isShutdown()) {
+                result.completeExceptionally(e);
+                return;
+            }
+            timer.schedule(() -> submit(decision, result), REQUEUE_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
 
-    public Payment process(String paymentId) {
+    private <T> void complete(Supplier<T> decision, CompletableFuture<T> result) {
         try {
-            Thread.sleep(delay);
-        } catch (InterruptedException ignored) {}
+            result.complete(decision.get());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
 
-        var payment = payments.findById(paymentId).orElse(null);
-        if (payment == null) return null;
+    private Payment decide(Payment payment) {
+        var transition = decide();
+        Instant now = Instant.now();
 
-        boolean approved = Math.random() > failRate;
+        boolean won = Boolean.TRUE.equals(tx.execute(status -> {
+            if (!payments.transition(payment.getId(), transition, now)) {
+                return false;
+            }
+            outbox.publish(updatedEvent(payment, transition));
+            return true;
+        }));
+        if (!won) {
+            log.warn("Transição {} perdida paymentId={} — pagamento já saiu de {}",
+                    transition, payment.getId(), transition.from());
+            return null;
+        }
+        apply(payment, transition, now);
+        outcomes.publish(payment);
+        return payment;
+    }
 
-        payment.setStatus(approved ? Status.APPROVED : Status.DECLINED);
-        payment.setUpdatedAt(Instant.now());
+    private List<Payment> decideAll(List<Payment> batch) {
+        var transitions = new HashMap<String, PaymentTransition>();
+        batch.forEach(p -> transitions.put(p.getId(), decide()));
+        Instant now = Instant.now();
+
+        // batch de UPDATEs e eventos dos vencedores commitam juntos
+        var won = tx.execute(status -> {
+            var ids = payments.transitionAll(transitions, now);
+            outbox.publishAll(batch.stream()
+                    .filter(p -> ids.contains(p.getId()))
+                    .map(p -> updatedEvent(p, transitions.get(p.getId())))
+                    .toList());
+            return ids;
+        });
+
+        var decided = new ArrayList<Payment>(won.size());
+        for (Payment p : batch) {
+            if (won.contains(p.getId())) {
+                apply(p, transitions.get(p.getId()), now);
+                outcomes.publish(p);
+                decided.add(p);
+            }
+        }
+        if (decided.size() < batch.size()) {
+            log.warn("Lote com {} transições perdidas de {}", batch.size() - decided.size(), batch.size());
+        }
+        return decided;
+    }
+
+    private PaymentTransition decide() {
+        return Math.random() > failRate ? PaymentTransition.APPROVE : PaymentTransition.DECLINE;
+    }
+
+    private static OutboxEvent updatedEvent(Payment payment, PaymentTransition transition) {
+        return OutboxEvent.paymentUpdated(payment.getId(), payment.getMerchant().getId(), transition.target());
+    }
 
-        return payments.save(payment);
+    // espelha no objeto em memória o que o UPDATE gravou
+    private static void apply(Payment payment, PaymentTransition transition, Instant now) {
+        payment.setStatus(transition.target());
+        payment.setUpdatedAt(now);
     }
 }
@@ -1,102 +1,273 @@
 package edu.ucsal.fiadopay.service.payment;
 
 import edu.ucsal.fiadopay.annotations.idempontent.Idempotent;
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
 import edu.ucsal.fiadopay.annotations.logged.Logged;
 
+import edu.ucsal.fiadopay.annotations.validTransactionWindow.TransactionWindowValidator;
 import edu.ucsal.fiadopay.annotations.validTransactionWindow.ValidTransactionWindow;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
 import edu.ucsal.fiadopay.domain.paymant.PaymentMapper;
 
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
 import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentItem;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentResponse;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentResult;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentCursor;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentPage;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
-import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
-import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
 import edu.ucsal.fiadopay.domain.paymant.factory.PaymentFactoryImpl;
 import edu.ucsal.fiadopay.domain.paymant.strategy.PaymentStrategy;
+import edu.ucsal.fiadopay.infra.id.IdGenerator;
 import edu.ucsal.fiadopay.repo.PaymentRepository;
 import edu.ucsal.fiadopay.service.merchantService.MerchantService;
-import edu.ucsal.fiadopay.service.webhook.WebhookDeliveryService;
-import edu.ucsal.fiadopay.service.webhook.WebhookEventFactory;
-import edu.ucsal.fiadopay.service.webhook.WebhookSigner;
+import edu.ucsal.fiadopay.service.outbox.OutboxPublisher;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 
     @Service
     @Slf4j
     public class PaymentService {
 
-        private final ExecutorService paymentExecutor;
         private final MerchantService merchantService;
         private final PaymentRepository payments;
         private final PaymentFactoryImpl paymentFactory;
         private final PaymentProcessor processor;
-        private final WebhookEventFactory eventFactory;
-        private final WebhookSigner signer;
-        private final WebhookDeliveryService deliveryService;
+        private final OutboxPublisher outbox;
+        private final IdGenerator ids;
+        private final TransactionWindowValidator windowValidator;
+        private final IdempotencyRegistry idempotency;
+        private final TransactionTemplate tx;
+
+        private static final int DEFAULT_PAGE_SIZE = 20;
+        private static final int MAX_PAGE_SIZE = 100;
 
 
     public PaymentService(
-            @Qualifier("paymentExecutor") ExecutorService paymentExecutor,
             PaymentProcessor processor,
-            WebhookEventFactory eventFactory,
-            WebhookSigner signer,
-            WebhookDeliveryService deliveryService,
+            OutboxPublisher outbox,
             MerchantService merchantService,
             PaymentRepository paymentRepository,
-            PaymentFactoryImpl paymentFactory
+            PaymentFactoryImpl paymentFactory,
+            IdGenerator ids,
+            TransactionWindowValidator windowValidator,
+            IdempotencyRegistry idempotency,
+            TransactionTemplate tx
     ) {
-        this.paymentExecutor = paymentExecutor;
         this.processor = processor;
-        this.eventFactory = eventFactory;
-        this.signer = signer;
-        this.deliveryService = deliveryService;
+        this.outbox = outbox;
         this.paymentFactory = paymentFactory;
         this.merchantService = merchantService;
         this.payments = paymentRepository;
+        this.ids = ids;
+        this.windowValidator = windowValidator;
+        this.idempotency = idempotency;
+        this.tx = tx;
     }
-    @Logged("metricas")
+    @Logged(value = "metricas", logArgs = true)
     @Idempotent
     @ValidTransactionWindow
     @Transactional
-    public PaymentResponse createPayment(Merchant merchant, String idemKey, PaymentRequest req) {
+    public PaymentResponse createPayment(MerchantSnapshot merchant, String idemKey, PaymentRequest req) {
 
         log.info("Iniciando criação de pagamento merchantId={} idemKey={} method={} amount={}",
-                merchant.getId(),
+                merchant.id(),
                 idemKey,
                 req.method(),
                 req.amount()
         );
 
-        PaymentStrategy strategy = paymentFactory.getStrategy(req.method().getValue());
+        processor.ensureCapacity(1);
+
+        PaymentStrategy strategy = paymentFactory.getStrategy(req.method());
         log.debug("Usando estratégia de pagamento: {}", req.method().getValue());
 
         Payment payment = strategy.process(req, merchant, idemKey);
+        payment.setMerchant(merchantService.getReference(merchant.id()));
         payments.save(payment);
 
         log.info("Pagamento criado com sucesso paymentId={} status={}",
                 payment.getId(), payment.getStatus());
 
-        paymentExecutor.submit(() -> handleWebhook(payment.getId()));
+        // o processador recebe o pagamento pela outbox, depois do commit
+        outbox.publish(OutboxEvent.paymentCreated(payment));
 
         return PaymentMapper.toResponse(payment);
     }
 
 
-        public PaymentResponse getPayment(String id, Merchant merchant) {
-            if (merchant == null || merchant.getId() == null) {
+        // Cada item tem sua própria chave e falha sozinho. Os que passam são gravados
+        // juntos numa transação (inserts em batch) e vão ao processador pela outbox.
+        @Logged("metricas")
+        public BatchPaymentResponse createPayments(MerchantSnapshot merchant, List<BatchPaymentItem> items) {
+
+            log.info("Iniciando criação de lote merchantId={} itens={}", merchant.id(), items.size());
+            processor.ensureCapacity(items.size());
+
+            // uma consulta só para todas as chaves do lote
+            var keys = new HashSet<String>();
+            items.forEach(item -> keys.add(item.idempotencyKey()));
+            var existing = new HashMap<String, Payment>();
+            payments.findByMerchantIdAndIdempotencyKeyIn(merchant.id(), keys)
+                    .forEach(p -> existing.put(p.getIdempotencyKey(), p));
+
+            var results = new BatchPaymentResult[items.size()];
+            var created = new ArrayList<BatchItem>();
+            var claims = new ArrayList<BatchClaim>();
+            var seen = new HashSet<String>();
+
+            try {
+                for (int i = 0; i < items.size(); i++) {
+                    var item = items.get(i);
+                    String key = item.idempotencyKey();
+
+                    if (!seen.add(key)) {
+                        results[i] = BatchPaymentResult.failed(i, key, HttpStatus.CONFLICT.value(),
+                                "Duplicate idempotencyKey in batch");
+                        continue;
+                    }
+
+                    var previous = existing.get(key);
+                    if (previous != null) {
+                        log.info("🔁 Item repetido — retornando pagamento existente paymentId={}", previous.getId());
+                        results[i] = BatchPaymentResult.replayed(i, key, PaymentMapper.toResponse(previous));
+                        continue;
+                    }
+
+                    // mesma reserva do POST unitário; não espera por ela para não
+                    // travar dois lotes que tenham as mesmas chaves em ordens diferentes
+                    var claim = new BatchClaim(i, new IdempotencyRegistry.Key(merchant.id(), key), new CompletableFuture<>());
+                    if (idempotency.claim(claim.key(), claim.done()) != null) {
+                        results[i] = BatchPaymentResult.failed(i, key, HttpStatus.CONFLICT.value(),
+                                "A request with the same Idempotency-Key is still in progress");
+                        continue;
+                    }
+                    claims.add(claim);
+
+                    try {
+                        windowValidator.validate(item.payment());
+                        Payment payment = paymentFactory.getStrategy(item.payment().method())
+                                .process(item.payment(), merchant, key);
+                        created.add(new BatchItem(i, key, payment));
+                    } catch (ResponseStatusException e) {
+                        log.warn("Item {} do lote rejeitado idemKey={}: {}", i, key, e.getReason());
+                        results[i] = BatchPaymentResult.failed(i, key, e.getStatusCode().value(), e.getReason());
+                    } catch (IllegalArgumentException e) {
+                        // details que não convertem para o tipo da estratégia
+                        log.warn("Item {} do lote inválido idemKey={}: {}", i, key, e.getMessage());
+                        results[i] = BatchPaymentResult.failed(i, key, HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                                "Invalid payment details");
+                    } catch (RuntimeException e) {
+                        // um item com defeito nunca derruba os outros
+                        log.error("Erro inesperado no item {} do lote idemKey={}", i, key, e);
+                        results[i] = failedUnexpectedly(i, key);
+                    }
+                }
+
+                insert(merchant, created, results);
+            } finally {
+                release(claims, results);
+            }
+
+            var response = BatchPaymentResponse.of(Arrays.asList(results));
+            log.info("Lote concluído merchantId={} criados={} repetidos={} falhas={}",
+                    merchant.id(), response.created(), response.replayed(), response.failed());
+            return response;
+        }
+
+        private record BatchItem(int index, String key, Payment payment) {}
+
+        private record BatchClaim(int index, IdempotencyRegistry.Key key, CompletableFuture<Object> done) {}
+
+        private void insert(MerchantSnapshot merchant, List<BatchItem> created, BatchPaymentResult[] results) {
+            if (created.isEmpty()) {
+                return;
+            }
+            try {
+                tx.executeWithoutResult(status -> save(merchant, created));
+                created.forEach(c -> results[c.index()] =
+                        BatchPaymentResult.created(c.index(), c.key(), PaymentMapper.toResponse(c.payment())));
+            } catch (DataIntegrityViolationException e) {
+                // outra requisição (ou outra instância) gravou uma das chaves depois da
+                // consulta: refaz item a item, cada um na sua transação
+                log.warn("Chave repetida ao gravar lote merchantId={} — gravando item a item", merchant.id());
+                created.forEach(c -> results[c.index()] = insertOne(merchant, c));
+            }
+        }
+
+        private BatchPaymentResult insertOne(MerchantSnapshot merchant, BatchItem item) {
+            try {
+                tx.executeWithoutResult(status -> save(merchant, List.of(item)));
+                return BatchPaymentResult.created(item.index(), item.key(), PaymentMapper.toResponse(item.payment()));
+            } catch (DataIntegrityViolationException e) {
+                return payments.findByIdempotencyKeyAndMerchantId(item.key(), merchant.id())
+                        .map(p -> BatchPaymentResult.replayed(item.index(), item.key(), PaymentMapper.toResponse(p)))
+                        .orElseGet(() -> BatchPaymentResult.failed(item.index(), item.key(),
+                                HttpStatus.CONFLICT.value(), "Duplicate idempotencyKey"));
+            } catch (RuntimeException e) {
+                log.error("Erro ao gravar item {} do lote idemKey={}", item.index(), item.key(), e);
+                return failedUnexpectedly(item.index(), item.key());
+            }
+        }
+
+        private void save(MerchantSnapshot merchant, List<BatchItem> items) {
+            var merchantRef = merchantService.getReference(merchant.id());
+            var batch = items.stream().map(BatchItem::payment).toList();
+            batch.forEach(p -> p.setMerchant(merchantRef));
+            payments.saveAll(batch);
+            // a violação de chave única aparece aqui, não no commit
+            payments.flush();
+            outbox.publishAll(batch.stream().map(OutboxEvent::paymentCreated).toList());
+        }
+
+        // Quem esperava a chave no POST unitário recebe o mesmo resultado do item.
+        private void release(List<BatchClaim> claims, BatchPaymentResult[] results) {
+            for (var claim : claims) {
+                var result = results[claim.index()];
+                if (result != null && result.succeeded()) {
+                    idempotency.remember(claim.key(), result.payment());
+                    claim.done().complete(result.payment());
+                } else {
+                    claim.done().completeExceptionally(result == null
+                            ? new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Batch failed")
+                            : new ResponseStatusException(HttpStatusCode.valueOf(result.status()), result.error()));
+                }
+                idempotency.release(claim.key(), claim.done());
+            }
+        }
+
+        private static BatchPaymentResult failedUnexpectedly(int index, String key) {
+            return BatchPaymentResult.failed(index, key, HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "Could not process item");
+        }
+
+
+        public PaymentResponse getPayment(String id, MerchantSnapshot merchant) {
+            if (merchant == null || merchant.id() == null) {
                 log.error("Merchant inválido na consulta de pagamento id={}", id);
                 throw new ResponseStatusException(
                         HttpStatus.BAD_REQUEST,
@@ -105,66 +276,67 @@ import java.util.concurrent.ExecutorService;
             }
 
             var payment = payments.findById(id)
-                    .filter(p -> p.belongsToMerchant(merchant.getId()))
+                    .filter(p -> p.belongsToMerchant(merchant.id()))
                     .orElseThrow(() -> {
-                        log.warn("Tentativa de acesso não autorizado paymentId={} merchantId={}", id, merchant.getId());
+                        log.warn("Tentativa de acesso não autorizado paymentId={} merchantId={}", id, merchant.id());
                         return new ResponseStatusException(
                                 HttpStatus.FORBIDDEN,
                                 "Payment does not exist or does not belong to this merchant."
                         );
                     });
 
-            log.debug("Pagamento {} consultado para merchant {}", id, merchant.getId());
+            log.debug("Pagamento {} consultado para merchant {}", id, merchant.id());
 
             return PaymentMapper.toResponse(payment);
         }
 
+        public PaymentPage listPayments(MerchantSnapshot merchant, PaymentFilter filter, String cursor, Integer limit) {
+            int size = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+            var after = cursor == null || cursor.isBlank() ? null : PaymentCursor.decode(cursor);
 
-        public Map<String,Object> refund(Merchant merchant, String paymentId){
-
-            var p = payments.findById(paymentId)
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-            if (!merchant.getId().equals(p.getMerchant().getId())) {
-                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            // uma linha a mais só para saber se existe próxima página
+            var rows = payments.search(merchant.id(), filter, after, size + 1);
+            if (rows.size() <= size) {
+                return new PaymentPage(rows, null);
             }
-            p.setStatus(Status.REFUNDED);
-            p.setUpdatedAt(Instant.now());
-            payments.save(p);
-            handleWebhook(p.getId());
-            return Map.of("id","ref_"+UUID.randomUUID(),"status","PENDING");
+            var items = List.copyOf(rows.subList(0, size));
+            return new PaymentPage(items, PaymentCursor.after(items.get(size - 1)).encode());
         }
-        private void handleWebhook(String paymentId) {
 
-        log.info("Processando webhook para paymentId={}", paymentId);
 
-        var payment = processor.process(paymentId);
-        if (payment == null) {
-            log.warn("Pagamento não encontrado para entrega de webhook paymentId={}", paymentId);
-            return;
-        }
+        // Reembolso é uma transição APPROVED -> REFUNDED num UPDATE só; não passa
+        // pelo processador, o evento do webhook vai para a outbox na mesma transação.
+        @Transactional
+        public Map<String,Object> refund(MerchantSnapshot merchant, String paymentId){
+
+            if (!payments.transition(paymentId, merchant.id(), PaymentTransition.REFUND, Instant.now())) {
+                // só no caminho de erro: descobre o motivo para responder
+                var p = payments.findById(paymentId)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+                if (!p.belongsToMerchant(merchant.id())) {
+                    throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+                }
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Payment cannot be refunded from status " + p.getStatus());
+            }
 
-        var merchant = merchantService.findById(payment.getMerchant().getId());
-
-        String payload = eventFactory.buildPaymentUpdatedEvent(payment);
-        String signature = signer.sign(payload);
-
-        var delivery = WebhookDelivery.builder()
-                .eventId("evt_" + UUID.randomUUID().toString().substring(0, 8))
-                .eventType("payment.updated")
-                .paymentId(payment.getId())
-                .targetUrl(merchant.getWebhookUrl())
-                .payload(payload)
-                .signature(signature)
-                .attempts(0)
-                .delivered(false)
-                .build();
-
-        log.info("Agendando entrega de webhook eventId={} paymentId={} url={}",
-                delivery.getEventId(),
-                delivery.getPaymentId(),
-                delivery.getTargetUrl()
-        );
+            log.info("Pagamento reembolsado paymentId={} merchantId={}", paymentId, merchant.id());
+            outbox.publish(OutboxEvent.paymentUpdated(paymentId, merchant.id(), Status.REFUNDED));
+            afterCommit(() -> idempotency.statusChanged(paymentId, Status.REFUNDED));
+            return Map.of("id",ids.next(IdGenerator.REFUND),"status",Status.REFUNDED.name());
+        }
 
-        deliveryService.scheduleDelivery(delivery);
-    }
+        // Fora de transação (testes, chamadas diretas) roda na hora.
+        private static void afterCommit(Runnable action) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                action.run();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
     }
@@ -2,13 +2,18 @@ package edu.ucsal.fiadopay.service.securityService;
 
 
 import edu.ucsal.fiadopay.domain.user.User;
+import edu.ucsal.fiadopay.repo.UserRepository;
+import lombok.AllArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+@AllArgsConstructor
 @Service
 public class SecurityService {
 
+    private final UserRepository userRepository;
+
     public User getAuthenticatedUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
@@ -21,7 +26,13 @@ public class SecurityService {
         if (principal instanceof User user) {
             return user;
         } 
+
+        // O filtro JWT autentica só com os claims (principal = e-mail);
+        // o usuário é carregado apenas quando alguém realmente precisa dele.
+        if (principal instanceof String email) {
+            return userRepository.findByEmail(email).orElse(null);
+        }
         
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package edu.ucsal.fiadopay.service.securityService;
+
+import java.time.Instant;
+
+/**
+ * Claims de um JWT já verificado: o suficiente para montar a autenticação
+ * do dashboard sem consultar o banco.
+ */
+public record TokenClaims(String subject, String role, Instant expiresAt) {}
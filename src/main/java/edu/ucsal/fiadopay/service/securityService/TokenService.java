@@ -1,56 +1,94 @@
 package edu.ucsal.fiadopay.service.securityService;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import edu.ucsal.fiadopay.domain.user.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 
 
 @Service
 public class TokenService {
-    @Value("${jwt.secret}")
-    private  String secret;
 
     private static final long EXPIRATION_TIME = 1000 * 60 * 60;
 
+    private final SecretKey key;
+    private final JwtParser parser;
+    // hash SHA-256 do token -> claims verificados, válido até o exp do token
+    private final Cache<String, TokenClaims> verified;
+
+    public TokenService(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.cache.max-size:10000}") long cacheSize
+    ) {
+        this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(Expiry.creating((String hash, TokenClaims claims) ->
+                        Duration.between(Instant.now(), claims.expiresAt())))
+                .build();
+    }
+
     public String generateToken(User user){
         return Jwts.builder()
                 .setSubject(user.getEmail())
                 .claim("role","ROLE_" + user.getRole().name())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
-    public String extractUsername (String token) {
-        return  Jwts.parserBuilder()
-                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes()))
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
-    public boolean isTokenValid(String token , UserDetails userDetails){
-        final  String username= extractUsername( token);
-        return username.equals(userDetails.getUsername() ) && !isExpired(token);
 
-    }
-    public boolean isExpired (String token){
-        return  Jwts.parserBuilder()
-                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes()))
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration()
-                .before(new Date());
+    /**
+     * Verifica assinatura e expiração numa única leitura do token. Tokens já
+     * verificados saem do cache até expirarem.
+     *
+     * @throws io.jsonwebtoken.JwtException se o token for inválido ou expirado
+     */
+    public TokenClaims verify(String token) {
+        String hash = hash(token);
+        var cached = verified.getIfPresent(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims body = parser.parseClaimsJws(token).getBody();
+        var claims = new TokenClaims(
+                body.getSubject(),
+                body.get("role", String.class),
+                body.getExpiration().toInstant()
+        );
+        verified.put(hash, claims);
+        return claims;
     }
 
     public  long getExpirationTime() {
         return EXPIRATION_TIME;
     }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
 }
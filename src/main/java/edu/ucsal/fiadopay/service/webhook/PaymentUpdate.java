@@ -0,0 +1,8 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.paymant.Status;
+
+import java.time.Instant;
+
+/** Estado de um pagamento a ser comunicado ao merchant. */
+public record PaymentUpdate(String paymentId, Status status, Instant occurredAt) {}
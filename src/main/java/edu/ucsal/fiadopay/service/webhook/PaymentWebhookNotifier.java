@@ -0,0 +1,65 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@Service
+public class PaymentWebhookNotifier {
+
+    private final WebhookEventFactory eventFactory;
+    private final WebhookSigner signer;
+    private final WebhookDeliveryService deliveryService;
+
+    public PaymentWebhookNotifier(
+            WebhookEventFactory eventFactory,
+            WebhookSigner signer,
+            WebhookDeliveryService deliveryService
+    ) {
+        this.eventFactory = eventFactory;
+        this.signer = signer;
+        this.deliveryService = deliveryService;
+    }
+
+    /** Monta, assina e agenda o webhook; completa quando a entrega estiver gravada. */
+    public CompletableFuture<WebhookDelivery> notify(MerchantSnapshot merchant, PaymentUpdate update) {
+        var event = eventFactory.buildPaymentUpdatedEvent(update.paymentId(), update.status(), update.occurredAt());
+        return schedule(merchant, event, update.paymentId());
+    }
+
+    /** Um envelope {@code payment.batch} com todos os estados, assinado uma vez. */
+    public CompletableFuture<WebhookDelivery> notifyBatch(MerchantSnapshot merchant, List<PaymentUpdate> updates) {
+        var event = eventFactory.buildPaymentBatchEvent(updates);
+        // a entrega não é de um pagamento só
+        return schedule(merchant, event, null);
+    }
+
+    private CompletableFuture<WebhookDelivery> schedule(MerchantSnapshot merchant, WebhookEvent event, String paymentId) {
+        String signature = signer.sign(event.payload());
+
+        var delivery = WebhookDelivery.builder()
+                .eventId(event.id())
+                .eventType(event.type())
+                .paymentId(paymentId)
+                .targetUrl(merchant.webhookUrl())
+                .payload(event.payload())
+                .signature(signature)
+                .attempts(0)
+                .delivered(false)
+                .build();
+
+        log.info("Agendando entrega de webhook eventId={} type={} paymentId={} url={}",
+                delivery.getEventId(),
+                delivery.getEventType(),
+                delivery.getPaymentId(),
+                delivery.getTargetUrl()
+        );
+
+        return deliveryService.scheduleDelivery(delivery);
+    }
+}
@@ -0,0 +1,267 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.merchantService.MerchantService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Agregação por endpoint na frente do envio de webhooks.
+ * <p>
+ * Os estados de pagamento ficam num buffer por {@code webhookUrl} durante
+ * {@code window-ms}. Dois estados do mesmo pagamento na mesma janela viram um
+ * só, o mais recente (ex.: APPROVED seguido de REFUNDED manda só REFUNDED).
+ * Merchants com {@code webhookBatching} recebem a janela inteira num único
+ * envelope {@code payment.batch} assinado; os demais, um POST por pagamento.
+ * <p>
+ * A ordem por pagamento é garantida aqui, pelo {@code occurredAt}: antes de
+ * enviar a janela, o {@code notified_at} de cada pagamento avança num UPDATE
+ * condicional em {@code payment_table}. Um estado mais antigo que o último
+ * enviado (ex.: reentregue pela outbox depois de um lease vencido, ou por
+ * outra instância) é descartado em vez de sobrescrever o mais novo no merchant.
+ * A marca fica no banco, então vale depois de um restart e entre instâncias.
+ * <p>
+ * O future de cada estado, inclusive dos substituídos, completa quando a
+ * entrega que o cobre estiver gravada em {@code webhook_table}: é nesse
+ * momento que a outbox pode apagar o evento.
+ * <p>
+ * O buffer de uma URL sem estados há {@code idle-ms} sai do mapa; se a URL
+ * voltar a receber estados, ganha um buffer novo.
+ */
+@Slf4j
+@Component
+public class WebhookCoalescer {
+
+    private static final class Pending {
+        PaymentUpdate update;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+    }
+
+    private static final class Endpoint {
+        MerchantSnapshot merchant;
+        LinkedHashMap<String, Pending> byPayment = new LinkedHashMap<>();
+        volatile long openedAt;   // nanoTime do primeiro estado da janela; 0 = vazio
+        volatile long lastUsed;   // nanoTime do último estado recebido
+        boolean retired;          // já saiu do mapa: quem pegou a referência antes busca outra
+    }
+
+    private final MerchantService merchantService;
+    private final PaymentWebhookNotifier notifier;
+    private final PaymentRepository payments;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final long idleNanos;
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final Counter coalesced;
+    private final Counter stale;
+    private final DistributionSummary envelopeSize;
+
+    public WebhookCoalescer(
+            MerchantService merchantService,
+            PaymentWebhookNotifier notifier,
+            PaymentRepository payments,
+            MeterRegistry registry,
+            @Value("${fiadopay.webhook-coalesce.window-ms:200}") long windowMs,
+            @Value("${fiadopay.webhook-coalesce.max-batch:100}") int maxBatch,
+            @Value("${fiadopay.webhook-coalesce.idle-ms:60000}") long idleMs
+    ) {
+        this.merchantService = merchantService;
+        this.notifier = notifier;
+        this.payments = payments;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatch = maxBatch;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+
+        Gauge.builder("fiadopay.webhook.coalesce.buffered", buffered, AtomicInteger::get)
+                .description("Estados de pagamento aguardando o fim da janela")
+                .register(registry);
+        Gauge.builder("fiadopay.webhook.coalesce.endpoints", endpoints, ConcurrentHashMap::size)
+                .description("URLs de webhook com buffer em memória")
+                .register(registry);
+        this.coalesced = Counter.builder("fiadopay.webhook.coalesced")
+                .description("Estados substituídos por um mais recente do mesmo pagamento")
+                .register(registry);
+        this.stale = Counter.builder("fiadopay.webhook.stale")
+                .description("Estados descartados por serem mais antigos que o último enviado")
+                .register(registry);
+        this.envelopeSize = DistributionSummary.builder("fiadopay.webhook.envelope.size")
+                .description("Eventos por envelope payment.batch")
+                .register(registry);
+    }
+
+    /**
+     * Enfileira o estado. O future completa quando uma entrega que o cobre
+     * estiver gravada, ou no fechamento da janela se o estado já estiver superado.
+     */
+    public CompletableFuture<Void> submit(Long merchantId, PaymentUpdate update) {
+        // webhookUrl e opt-in vêm do diretório em memória, sem ir ao banco
+        var merchant = merchantService.findById(merchantId);
+        var done = new CompletableFuture<Void>();
+
+        Endpoint endpoint;
+        boolean flushNow;
+        while (true) {
+            endpoint = endpoints.computeIfAbsent(merchant.webhookUrl(), url -> new Endpoint());
+            synchronized (endpoint) {
+                if (endpoint.retired) {
+                    continue;
+                }
+                endpoint.merchant = merchant;
+                var pending = endpoint.byPayment.get(update.paymentId());
+                if (pending == null) {
+                    pending = new Pending();
+                    endpoint.byPayment.put(update.paymentId(), pending);
+                    buffered.incrementAndGet();
+                    if (endpoint.openedAt == 0) {
+                        endpoint.openedAt = System.nanoTime();
+                    }
+                } else {
+                    coalesced.increment();
+                }
+                // na mesma janela fica o mais recente, chegue na ordem que chegar
+                if (pending.update == null || !update.occurredAt().isBefore(pending.update.occurredAt())) {
+                    pending.update = update;
+                }
+                pending.waiters.add(done);
+                endpoint.lastUsed = System.nanoTime();
+                flushNow = windowNanos == 0 || endpoint.byPayment.size() >= maxBatch;
+                break;
+            }
+        }
+        if (flushNow) {
+            flush(endpoint);
+        }
+        return done;
+    }
+
+    @Scheduled(fixedDelayString = "${fiadopay.webhook-coalesce.tick-ms:20}")
+    public void flushDue() {
+        long now = System.nanoTime();
+        for (var entry : endpoints.entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            long openedAt = endpoint.openedAt;
+            if (openedAt != 0 && now - openedAt >= windowNanos) {
+                flush(endpoint);
+            } else if (openedAt == 0 && now - endpoint.lastUsed >= idleNanos) {
+                retire(entry.getKey(), endpoint);
+            }
+        }
+    }
+
+    private void retire(String url, Endpoint endpoint) {
+        synchronized (endpoint) {
+            if (!endpoint.byPayment.isEmpty() || System.nanoTime() - endpoint.lastUsed < idleNanos) {
+                return;
+            }
+            endpoint.retired = true;
+        }
+        endpoints.remove(url, endpoint);
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        endpoints.values().forEach(this::flush);
+    }
+
+    private void flush(Endpoint endpoint) {
+        List<Pending> window;
+        MerchantSnapshot merchant;
+        synchronized (endpoint) {
+            if (endpoint.byPayment.isEmpty()) {
+                return;
+            }
+            window = new ArrayList<>(endpoint.byPayment.values());
+            endpoint.byPayment = new LinkedHashMap<>();
+            endpoint.openedAt = 0;
+            merchant = endpoint.merchant;
+        }
+        buffered.addAndGet(-window.size());
+
+        window = current(window);
+        if (window.isEmpty()) {
+            return;
+        }
+        if (merchant.webhookBatching() && window.size() > 1) {
+            for (int from = 0; from < window.size(); from += maxBatch) {
+                var chunk = window.subList(from, Math.min(from + maxBatch, window.size()));
+                var updates = chunk.stream().map(p -> p.update).toList();
+                envelopeSize.record(updates.size());
+                track(() -> notifier.notifyBatch(merchant, updates), chunk);
+            }
+            log.debug("Janela de webhooks enviada em envelope url={} eventos={}", merchant.webhookUrl(), window.size());
+        } else {
+            for (Pending p : window) {
+                track(() -> notifier.notify(merchant, p.update), List.of(p));
+            }
+        }
+    }
+
+    // Avança notified_at da janela inteira num batch e separa os superados: esses
+    // não são enviados, mas confirmam (o estado mais novo já saiu ou vai sair).
+    // Sem resposta do banco, nada é enviado e a outbox tenta de novo.
+    private List<Pending> current(List<Pending> window) {
+        var occurredAt = new HashMap<String, Instant>(window.size() * 2);
+        window.forEach(p -> occurredAt.put(p.update.paymentId(), p.update.occurredAt()));
+        Set<String> accepted;
+        try {
+            accepted = payments.markNotified(occurredAt);
+        } catch (Exception e) {
+            log.warn("Falha ao marcar {} estado(s) como enviados; voltam pela outbox: {}",
+                    window.size(), e.getMessage());
+            window.forEach(p -> p.waiters.forEach(w -> w.completeExceptionally(e)));
+            return List.of();
+        }
+
+        var current = new ArrayList<Pending>(window.size());
+        for (Pending p : window) {
+            if (accepted.contains(p.update.paymentId())) {
+                current.add(p);
+                continue;
+            }
+            stale.increment();
+            log.warn("Estado {} do pagamento {} descartado: já foi enviado um mais recente",
+                    p.update.status(), p.update.paymentId());
+            p.waiters.forEach(w -> w.complete(null));
+        }
+        return current;
+    }
+
+    private static void track(Supplier<CompletableFuture<WebhookDelivery>> send, List<Pending> covered) {
+        CompletableFuture<WebhookDelivery> scheduled;
+        try {
+            scheduled = send.get();
+        } catch (Exception e) {
+            scheduled = CompletableFuture.failedFuture(e);
+        }
+        scheduled.whenComplete((saved, e) -> covered.forEach(p -> p.waiters.forEach(w -> {
+            if (e != null) {
+                w.completeExceptionally(e);
+            } else {
+                w.complete(null);
+            }
+        })));
+    }
+}
@@ -1,51 +1,111 @@
 package edu.ucsal.fiadopay.service.webhook;
 
 import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
-import edu.ucsal.fiadopay.repo.WebhookDeliveryRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class WebhookDeliveryService {
 
     private final ExecutorService webhookExecutor;
-    private final WebhookDeliveryRepository deliveries;
+    private final Executor resultExecutor;
     private final WebhookSender sender;
+    private final WebhookRetryPolicy retryPolicy;
+    private final WebhookDeliveryWriter writer;
+    private final WebhookEndpointGuard guard;
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
 
     public WebhookDeliveryService(
             @Qualifier("webhookExecutor") ExecutorService webhookExecutor,
-            WebhookDeliveryRepository deliveries,
-            WebhookSender sender
+            WebhookSender sender,
+            WebhookRetryPolicy retryPolicy,
+            WebhookDeliveryWriter writer,
+            WebhookEndpointGuard guard
     ) {
         this.webhookExecutor = webhookExecutor;
-        this.deliveries = deliveries;
+        // registrar o resultado é barato e não pode se perder: com a fila
+        // cheia roda na própria thread que completou o envio
+        this.resultExecutor = task -> {
+            try {
+                webhookExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
         this.sender = sender;
+        this.retryPolicy = retryPolicy;
+        this.writer = writer;
+        this.guard = guard;
     }
 
-    public void scheduleDelivery(WebhookDelivery delivery) {
-        deliveries.save(delivery);
-        log.info("Webhook agendado: id={}, url={}, payloadSize={}",
-                delivery.getId(),
-                delivery.getTargetUrl(),
-                delivery.getPayload() != null ? delivery.getPayload().length() : 0
-        );
+    // Completa com a entrega já gravada em webhook_table (falha se o lote falhar):
+    // a partir daí ela não se perde mais, o retry cuida do resto.
+    public CompletableFuture<WebhookDelivery> scheduleDelivery(WebhookDelivery delivery) {
+        delivery.setNextAttemptAt(retryPolicy.leaseUntil(Instant.now()));
+        // só despacha depois que o lote com a linha foi gravado
+        return writer.insert(delivery)
+                .whenComplete((saved, e) -> {
+                    if (e != null) {
+                        log.error("Erro ao gravar webhook paymentId={}: {}", delivery.getPaymentId(), e.getMessage());
+                        return;
+                    }
+                    log.info("Webhook agendado: id={}, url={}, payloadSize={}",
+                            saved.getId(),
+                            saved.getTargetUrl(),
+                            saved.getPayload() != null ? saved.getPayload().length : 0
+                    );
+                    dispatch(saved);
+                });
+    }
 
-        webhookExecutor.submit(() -> attempt(delivery.getId()));
+    public boolean isInFlight(Long id) {
+        return inFlight.contains(id);
     }
 
-    private void attempt(Long id) {
-        var d = deliveries.findById(id).orElse(null);
-        if (d == null) {
-            log.error("Tentativa abortada: webhook id={} não encontrado", id);
+    // Só dispara se a entrega ainda não estiver em andamento neste processo.
+    public void dispatch(WebhookDelivery d) {
+        if (!inFlight.add(d.getId())) {
+            return;
+        }
+        var admission = guard.admit(d.getTargetUrl());
+        if (!admission.admitted()) {
+            park(d, admission.waitNanos());
             return;
         }
+        try {
+            webhookExecutor.execute(() -> attempt(d, admission.permit()));
+        } catch (RejectedExecutionException e) {
+            // a linha já está gravada com lease: o WebhookRetryScheduler tenta de novo quando vencer
+            admission.permit().cancel();
+            inFlight.remove(d.getId());
+            log.warn("Fila de webhooks cheia — entrega id={} adiada para o agendador de retry", d.getId());
+        }
+    }
 
+    // Host com circuito aberto ou sem vaga: volta para a tabela sem contar tentativa.
+    // O jitter evita que as entregas estacionadas acordem todas juntas.
+    private void park(WebhookDelivery d, long waitNanos) {
+        long jitter = ThreadLocalRandom.current().nextLong(TimeUnit.NANOSECONDS.toMillis(waitNanos) / 10 + 1);
+        d.setNextAttemptAt(Instant.now().plusNanos(waitNanos).plusMillis(jitter));
+        writer.update(d);
+        inFlight.remove(d.getId());
+        log.debug("Webhook id={} estacionado até {} (url={})", d.getId(), d.getNextAttemptAt(), d.getTargetUrl());
+    }
+
+    private void attempt(WebhookDelivery d, WebhookEndpointGuard.Permit permit) {
         log.info("Iniciando tentativa {} para webhook id={} (url={})",
                 d.getAttempts() + 1,
                 d.getId(),
@@ -53,44 +113,48 @@ public class WebhookDeliveryService {
         );
 
         try {
-            boolean ok = sender.send(d);
+            sender.send(d)
+                    // a vaga do host volta assim que a resposta chega
+                    .whenComplete((ok, error) -> permit.release(error == null && Boolean.TRUE.equals(ok)))
+                    .whenCompleteAsync((ok, error) -> onResult(d, ok, error), resultExecutor);
+        } catch (Exception e) {
+            permit.release(false);
+            onResult(d, false, e);
+        }
+    }
+
+    private void onResult(WebhookDelivery d, Boolean ok, Throwable error) {
+        try {
+            Instant now = Instant.now();
+            boolean delivered = error == null && Boolean.TRUE.equals(ok);
 
             d.setAttempts(d.getAttempts() + 1);
-            d.setLastAttemptAt(Instant.now());
-            d.setDelivered(ok);
-            deliveries.save(d);
+            d.setLastAttemptAt(now);
+            d.setDelivered(delivered);
 
-            if (ok) {
+            if (delivered) {
+                d.setNextAttemptAt(null);
                 log.info("Webhook entregue com sucesso: id={}, attempts={}", d.getId(), d.getAttempts());
-                return;
-            }
-
-            log.warn("Falha ao entregar webhook id={} tentativa={}", d.getId(), d.getAttempts());
-
-            if (d.getAttempts() < 5) {
-                long wait = 1000L * d.getAttempts();
-                log.info("Reagendando id={} para daqui {}ms", d.getId(), wait);
-                Thread.sleep(wait);
-                attempt(id);
+            } else if (retryPolicy.canRetry(d.getAttempts())) {
+                d.setNextAttemptAt(retryPolicy.nextAttemptAt(d.getAttempts(), now));
+                if (error != null) {
+                    log.warn("Erro no webhook id={} tentativa={}: {} – próxima tentativa em {}",
+                            d.getId(), d.getAttempts(), error.getMessage(), d.getNextAttemptAt());
+                } else {
+                    log.warn("Falha ao entregar webhook id={} tentativa={} – próxima tentativa em {}",
+                            d.getId(), d.getAttempts(), d.getNextAttemptAt());
+                }
             } else {
-                log.error("Webhook id={} atingiu o limite máximo de tentativas (5)", d.getId());
+                d.setNextAttemptAt(null);
+                log.error("Webhook id={} atingiu o limite máximo de tentativas ({})",
+                        d.getId(), retryPolicy.getMaxAttempts());
             }
 
+            writer.update(d);
         } catch (Exception e) {
-            log.error("Erro inesperado no webhook id={}: {}", d.getId(), e.getMessage(), e);
-
-            d.setAttempts(d.getAttempts() + 1);
-            d.setLastAttemptAt(Instant.now());
-            deliveries.save(d);
-
-            if (d.getAttempts() < 5) {
-                long wait = 1000L * d.getAttempts();
-                log.warn("Erro – reagendando id={} para daqui {}ms", d.getId(), wait);
-                try { Thread.sleep(wait); } catch (Exception ignored) {}
-                attempt(id);
-            } else {
-                log.error("Webhook id={} falhou definitivamente após 5 tentativas.", d.getId());
-            }
+            log.error("Erro ao registrar resultado do webhook id={}: {}", d.getId(), e.getMessage(), e);
+        } finally {
+            inFlight.remove(d.getId());
         }
     }
 }
@@ -0,0 +1,225 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.repo.WebhookDeliveryRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind de {@code webhook_table}.
+ * <p>
+ * Inserts e mudanças de estado ficam numa fila e são gravados em lotes JDBC,
+ * quando o lote enche ou quando vence {@code max-delay-ms}, o que vier antes.
+ * O insert só completa depois do flush, então uma entrega nunca é enviada
+ * antes de existir no banco. Atualizações da mesma entrega são coalescidas:
+ * só o estado mais recente é gravado.
+ * <p>
+ * Os flushes rodam num timer próprio ({@code webhookWriterTimer}), fora do
+ * scheduler do Spring: um drain longo da outbox não atrasa o {@code max-delay-ms}.
+ * Os futures dos inserts completam depois de soltar o monitor, então os
+ * callbacks (despacho, coalescer, ack da outbox) não seguram o writer.
+ */
+@Slf4j
+@Component
+public class WebhookDeliveryWriter {
+
+    private static final String UPDATE_STATE = """
+            update webhook_table
+               set attempts = ?, delivered = ?, last_attempt_at = ?, next_attempt_at = ?
+             where id = ?""";
+
+    private record PendingInsert(WebhookDelivery delivery, CompletableFuture<WebhookDelivery> done) {}
+
+    private record StateUpdate(Long id, int attempts, boolean delivered, Instant lastAttemptAt, Instant nextAttemptAt) {
+        static StateUpdate of(WebhookDelivery d) {
+            return new StateUpdate(d.getId(), d.getAttempts(), d.isDelivered(), d.getLastAttemptAt(), d.getNextAttemptAt());
+        }
+    }
+
+    private final WebhookDeliveryRepository deliveries;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ScheduledExecutorService timer;
+    private final int batchSize;
+    private final long maxDelayMs;
+
+    private final ConcurrentLinkedQueue<PendingInsert> inserts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger insertCount = new AtomicInteger();
+    private final ConcurrentHashMap<Long, StateUpdate> updates = new ConcurrentHashMap<>();
+
+    private final DistributionSummary insertBatch;
+    private final DistributionSummary updateBatch;
+    private final Timer insertFlush;
+    private final Timer updateFlush;
+
+    public WebhookDeliveryWriter(
+            WebhookDeliveryRepository deliveries,
+            JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            MeterRegistry registry,
+            @Qualifier("webhookWriterTimer") ScheduledExecutorService timer,
+            @Value("${fiadopay.webhook-writer.batch-size:50}") int batchSize,
+            @Value("${fiadopay.webhook-writer.max-delay-ms:50}") long maxDelayMs
+    ) {
+        this.deliveries = deliveries;
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.timer = timer;
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+
+        this.insertBatch = batchSummary(registry, "insert");
+        this.updateBatch = batchSummary(registry, "update");
+        this.insertFlush = flushTimer(registry, "insert");
+        this.updateFlush = flushTimer(registry, "update");
+    }
+
+    @PostConstruct
+    void start() {
+        timer.scheduleWithFixedDelay(this::scheduledFlush, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Enfileira a entrega; o future completa com o id já atribuído depois do flush. */
+    public CompletableFuture<WebhookDelivery> insert(WebhookDelivery delivery) {
+        var pending = new PendingInsert(delivery, new CompletableFuture<>());
+        inserts.add(pending);
+        if (insertCount.incrementAndGet() >= batchSize) {
+            flushSoon();
+        }
+        return pending.done();
+    }
+
+    /** Enfileira o estado atual da entrega (tentativas, entregue, próximo retry). */
+    public void update(WebhookDelivery delivery) {
+        updates.put(delivery.getId(), StateUpdate.of(delivery));
+        if (updates.size() >= batchSize) {
+            flushSoon();
+        }
+    }
+
+    // Lote cheio: grava no timer do writer, não na thread de quem enfileirou
+    private void flushSoon() {
+        try {
+            timer.execute(this::scheduledFlush);
+        } catch (RejectedExecutionException e) {
+            flush(); // timer já parado (shutdown)
+        }
+    }
+
+    // Uma exceção aqui cancelaria o scheduleWithFixedDelay
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Falha no flush de webhook_table: {}", e.getMessage(), e);
+        }
+    }
+
+    // Um flusher por vez: dois lotes de update concorrentes poderiam gravar
+    // estados da mesma entrega fora de ordem. Os inserts gravados só são
+    // completados fora do monitor: os callbacks podem voltar ao writer ou
+    // ir ao banco (ack da outbox).
+    @PreDestroy
+    public void flush() {
+        List<Runnable> completions = new ArrayList<>();
+        synchronized (this) {
+            flushInserts(completions);
+            flushUpdates();
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    private void flushInserts(List<Runnable> completions) {
+        while (!inserts.isEmpty()) {
+            List<PendingInsert> batch = new ArrayList<>(batchSize);
+            PendingInsert next;
+            while (batch.size() < batchSize && (next = inserts.poll()) != null) {
+                batch.add(next);
+            }
+            insertCount.addAndGet(-batch.size());
+
+            try {
+                insertFlush.record(() -> tx.executeWithoutResult(status ->
+                        deliveries.saveAll(batch.stream().map(PendingInsert::delivery).toList())));
+                insertBatch.record(batch.size());
+                batch.forEach(p -> completions.add(() -> p.done().complete(p.delivery())));
+            } catch (Exception e) {
+                log.error("Falha ao gravar lote de {} webhooks: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(p -> completions.add(() -> p.done().completeExceptionally(e)));
+            }
+        }
+    }
+
+    private void flushUpdates() {
+        while (!updates.isEmpty()) {
+            List<StateUpdate> batch = new ArrayList<>(batchSize);
+            for (Long id : updates.keySet()) {
+                var u = updates.remove(id);
+                if (u != null) batch.add(u);
+                if (batch.size() == batchSize) break;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                updateFlush.record(() -> jdbc.batchUpdate(UPDATE_STATE, batch, batch.size(), (ps, u) -> {
+                    ps.setInt(1, u.attempts());
+                    ps.setBoolean(2, u.delivered());
+                    setInstant(ps, 3, u.lastAttemptAt());
+                    setInstant(ps, 4, u.nextAttemptAt());
+                    ps.setLong(5, u.id());
+                }));
+                updateBatch.record(batch.size());
+            } catch (Exception e) {
+                log.error("Falha ao atualizar lote de {} webhooks, tentando no próximo flush: {}",
+                        batch.size(), e.getMessage(), e);
+                // não sobrescreve um estado mais novo que chegou nesse meio tempo
+                batch.forEach(u -> updates.putIfAbsent(u.id(), u));
+                return;
+            }
+        }
+    }
+
+    private static void setInstant(PreparedStatement ps, int index, Instant value) throws SQLException {
+        ps.setObject(index, value == null ? null : value.atOffset(ZoneOffset.UTC), Types.TIMESTAMP_WITH_TIMEZONE);
+    }
+
+    private static DistributionSummary batchSummary(MeterRegistry registry, String op) {
+        return DistributionSummary.builder("fiadopay.webhook.writer.batch.size")
+                .description("Linhas de webhook_table gravadas por lote")
+                .tag("op", op)
+                .register(registry);
+    }
+
+    private static Timer flushTimer(MeterRegistry registry, String op) {
+        return Timer.builder("fiadopay.webhook.writer.flush")
+                .description("Tempo de cada lote gravado em webhook_table")
+                .tag("op", op)
+                .register(registry);
+    }
+}
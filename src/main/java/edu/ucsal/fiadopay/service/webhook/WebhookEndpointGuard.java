@@ -0,0 +1,256 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bulkhead e circuit breaker por host de destino dos webhooks.
+ * <p>
+ * Cada {@code host:porta} tem no máximo {@code max-concurrent-per-host}
+ * envios em andamento, então um merchant lento não ocupa a capacidade dos
+ * outros. Depois de {@code failure-threshold} falhas seguidas o circuito abre
+ * por {@code open-ms}; vencido o prazo, um único envio passa como sonda
+ * (HALF_OPEN): sucesso fecha o circuito, falha abre de novo. Só a sonda tira o
+ * circuito de OPEN/HALF_OPEN; o resultado de um envio autorizado antes da última
+ * troca de estado entra na latência e é ignorado pelo circuito.
+ * <p>
+ * Quem não é admitido não gasta tentativa nem thread: o
+ * {@link WebhookDeliveryService} devolve a entrega para {@code webhook_table}
+ * com o instante sugerido aqui, e o {@link WebhookRetryScheduler} a retoma.
+ */
+@Slf4j
+@Component
+public class WebhookEndpointGuard {
+
+    // ordinal = valor do gauge fiadopay.webhook.breaker.state
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    /** Envio autorizado; devolva exatamente uma vez com {@link #release} ou {@link #cancel}. */
+    public final class Permit {
+        private final Host host;
+        private final long startedAt;
+        private final boolean probe;
+        private final long generation;
+
+        private Permit(Host host, long startedAt, boolean probe, long generation) {
+            this.host = host;
+            this.startedAt = startedAt;
+            this.probe = probe;
+            this.generation = generation;
+        }
+
+        /** Registra a latência e o resultado do envio no circuito do host. */
+        public void release(boolean ok) {
+            long now = clock.getAsLong();
+            (ok ? host.succeeded : host.failed).record(now - startedAt, TimeUnit.NANOSECONDS);
+            host.slots.release();
+            host.onResult(this, ok, now);
+        }
+
+        /** O envio nem saiu (ex.: fila cheia): libera a vaga sem afetar o circuito. */
+        public void cancel() {
+            host.slots.release();
+            if (probe) {
+                synchronized (host) {
+                    host.probing = false;
+                }
+            }
+        }
+    }
+
+    /** Ou um {@link Permit}, ou quantos nanos esperar antes de tentar de novo. */
+    public record Admission(Permit permit, long waitNanos) {
+        public boolean admitted() {
+            return permit != null;
+        }
+    }
+
+    private final class Host {
+        final String name;
+        final Semaphore slots = new Semaphore(maxConcurrent);
+        final Timer succeeded;
+        final Timer failed;
+        final Counter parkedOpen;
+        final Counter parkedBusy;
+
+        // escrita sob o lock do Host; volatile só para o gauge
+        volatile State state = State.CLOSED;
+        int failures;
+        long openUntil;
+        boolean probing;
+        // muda a cada abertura/fechamento; permits de uma geração anterior não decidem nada
+        long generation;
+
+        Host(String name) {
+            this.name = name;
+            this.succeeded = latency(name, "success");
+            this.failed = latency(name, "failure");
+            this.parkedOpen = parked(name, "open");
+            this.parkedBusy = parked(name, "busy");
+            Gauge.builder("fiadopay.webhook.breaker.state", this, h -> h.state.ordinal())
+                    .description("Circuito por host: 0 fechado, 1 meio-aberto, 2 aberto")
+                    .tag("host", name)
+                    .register(registry);
+            Gauge.builder("fiadopay.webhook.host.inflight", slots, s -> maxConcurrent - s.availablePermits())
+                    .description("Envios de webhook em andamento para o host")
+                    .tag("host", name)
+                    .register(registry);
+        }
+
+        synchronized void onResult(Permit permit, boolean ok, long now) {
+            if (permit.generation != generation) {
+                return;
+            }
+            if (permit.probe) {
+                if (ok) {
+                    close();
+                } else {
+                    open(now);
+                }
+            } else if (state == State.CLOSED) {
+                if (ok) {
+                    failures = 0;
+                } else if (++failures >= failureThreshold) {
+                    open(now);
+                }
+            }
+        }
+
+        private void close() {
+            log.info("Circuito de webhooks fechado para {}", name);
+            state = State.CLOSED;
+            failures = 0;
+            probing = false;
+            generation++;
+        }
+
+        private void open(long now) {
+            log.warn("Circuito de webhooks aberto para {} por {} ms",
+                    name, TimeUnit.NANOSECONDS.toMillis(openNanos));
+            state = State.OPEN;
+            openUntil = now + openNanos;
+            failures = 0;
+            probing = false;
+            generation++;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final LongSupplier clock;
+    private final int maxConcurrent;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long parkNanos;
+
+    // poucos hosts distintos (um por webhookUrl de merchant): mapa simples basta
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebhookEndpointGuard(
+            MeterRegistry registry,
+            @Value("${fiadopay.webhook-breaker.max-concurrent-per-host:10}") int maxConcurrent,
+            @Value("${fiadopay.webhook-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${fiadopay.webhook-breaker.open-ms:30000}") long openMs,
+            @Value("${fiadopay.webhook-breaker.park-ms:1000}") long parkMs
+    ) {
+        this(registry, maxConcurrent, failureThreshold, openMs, parkMs, System::nanoTime);
+    }
+
+    WebhookEndpointGuard(MeterRegistry registry, int maxConcurrent, int failureThreshold,
+                         long openMs, long parkMs, LongSupplier clock) {
+        this.registry = registry;
+        this.clock = clock;
+        this.maxConcurrent = maxConcurrent;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.parkNanos = TimeUnit.MILLISECONDS.toNanos(parkMs);
+    }
+
+    public Admission admit(String targetUrl) {
+        var host = hosts.computeIfAbsent(hostOf(targetUrl), Host::new);
+        long now = clock.getAsLong();
+
+        boolean probe;
+        long generation;
+        synchronized (host) {
+            if (host.state == State.OPEN) {
+                if (now < host.openUntil) {
+                    host.parkedOpen.increment();
+                    return new Admission(null, host.openUntil - now);
+                }
+                host.state = State.HALF_OPEN;
+                log.info("Circuito de webhooks meio-aberto para {}: enviando sonda", host.name);
+            }
+            if (host.state == State.HALF_OPEN) {
+                if (host.probing) {
+                    host.parkedOpen.increment();
+                    return new Admission(null, parkNanos);
+                }
+                host.probing = true;
+                probe = true;
+            } else {
+                probe = false;
+            }
+            generation = host.generation;
+        }
+
+        if (!host.slots.tryAcquire()) {
+            if (probe) {
+                synchronized (host) {
+                    host.probing = false;
+                }
+            }
+            host.parkedBusy.increment();
+            return new Admission(null, parkNanos);
+        }
+        return new Admission(new Permit(host, now, probe, generation), 0);
+    }
+
+    State state(String targetUrl) {
+        var host = hosts.get(hostOf(targetUrl));
+        return host == null ? State.CLOSED : host.state;
+    }
+
+    private Timer latency(String host, String outcome) {
+        return Timer.builder("fiadopay.webhook.host.latency")
+                .description("Latência dos envios de webhook por host")
+                .tag("host", host)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    private Counter parked(String host, String reason) {
+        return Counter.builder("fiadopay.webhook.parked")
+                .description("Entregas devolvidas à tabela sem gastar tentativa")
+                .tag("host", host)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static String hostOf(String targetUrl) {
+        try {
+            var uri = URI.create(targetUrl);
+            if (uri.getHost() == null) {
+                return targetUrl;
+            }
+            int port = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+            return uri.getHost().toLowerCase() + ":" + port;
+        } catch (IllegalArgumentException e) {
+            // URL inválida falha no envio; o circuito agrupa pela string mesmo
+            return targetUrl;
+        }
+    }
+}
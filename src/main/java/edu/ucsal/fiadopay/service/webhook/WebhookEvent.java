@@ -0,0 +1,7 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+/**
+ * Evento já serializado: o mesmo {@code id} vai no corpo e em
+ * {@code webhook_table.eventId}.
+ */
+public record WebhookEvent(String id, String type, byte[] payload) {}
@@ -1,36 +1,75 @@
 package edu.ucsal.fiadopay.service.webhook;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
-import lombok.RequiredArgsConstructor;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.infra.id.IdGenerator;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
 
 @Service
-@RequiredArgsConstructor
 public class WebhookEventFactory {
 
-    private final ObjectMapper mapper;
+    private record PaymentData(String paymentId, String status, String occurredAt) {}
 
-    public String buildPaymentUpdatedEvent(Payment p) {
+    private record PaymentUpdatedEvent(String id, String type, PaymentData data) {}
+
+    // envelope para merchants com webhookBatching: um id, uma assinatura, N eventos
+    private record PaymentBatchEvent(String id, String type, List<PaymentData> data) {}
+
+    public static final String PAYMENT_UPDATED = "payment.updated";
+    public static final String PAYMENT_BATCH = "payment.batch";
+
+    private final ObjectWriter writer;
+    private final ObjectWriter batchWriter;
+    private final IdGenerator ids;
+
+    public WebhookEventFactory(ObjectMapper mapper, IdGenerator ids) {
+        this.writer = mapper.writerFor(PaymentUpdatedEvent.class);
+        this.batchWriter = mapper.writerFor(PaymentBatchEvent.class);
+        this.ids = ids;
+    }
+
+    // Serializa uma única vez direto para UTF-8: são esses bytes que serão
+    // assinados, gravados e enviados em todas as tentativas.
+    public WebhookEvent buildPaymentUpdatedEvent(Payment p) {
+        return buildPaymentUpdatedEvent(p.getId(), p.getStatus());
+    }
+
+    public WebhookEvent buildPaymentUpdatedEvent(String paymentId, Status status) {
+        return buildPaymentUpdatedEvent(paymentId, status, Instant.now());
+    }
+
+    // occurredAt é o instante da mudança de estado, não o do envio
+    public WebhookEvent buildPaymentUpdatedEvent(String paymentId, Status status, Instant occurredAt) {
+        var event = new PaymentUpdatedEvent(
+                ids.next(IdGenerator.EVENT),
+                PAYMENT_UPDATED,
+                new PaymentData(paymentId, status.name(), occurredAt.toString())
+        );
+        try {
+            return new WebhookEvent(event.id(), event.type(), writer.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Erro ao serializar evento de webhook", e);
+        }
+    }
+
+    public WebhookEvent buildPaymentBatchEvent(List<PaymentUpdate> updates) {
+        var event = new PaymentBatchEvent(
+                ids.next(IdGenerator.EVENT),
+                PAYMENT_BATCH,
+                updates.stream()
+                        .map(u -> new PaymentData(u.paymentId(), u.status().name(), u.occurredAt().toString()))
+                        .toList()
+        );
         try {
-            var data = Map.of(
-                    "paymentId", p.getId(),
-                    "status", p.getStatus().name(),
-                    "occurredAt", Instant.now().toString()
-            );
-            var event = Map.of(
-                    "id", "evt_" + UUID.randomUUID().toString().substring(0, 8),
-                    "type", "payment.updated",
-                    "data", data
-            );
-            return mapper.writeValueAsString(event);
-
-        } catch (Exception e) {
-            return null;
+            return new WebhookEvent(event.id(), event.type(), batchWriter.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Erro ao serializar lote de webhooks", e);
         }
     }
 }
@@ -0,0 +1,50 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+public class WebhookRetryPolicy {
+
+    @Getter
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long leaseMs;
+
+    public WebhookRetryPolicy(
+            @Value("${fiadopay.webhook-retry.max-attempts:5}") int maxAttempts,
+            @Value("${fiadopay.webhook-retry.base-delay-ms:1000}") long baseDelayMs,
+            @Value("${fiadopay.webhook-retry.max-delay-ms:300000}") long maxDelayMs,
+            @Value("${fiadopay.webhook-retry.lease-ms:30000}") long leaseMs
+    ) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.leaseMs = leaseMs;
+    }
+
+    public boolean canRetry(int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    // Backoff exponencial com "equal jitter": metade fixa, metade aleatória,
+    // para que merchants que falharam juntos não voltem todos no mesmo instante.
+    public Instant nextAttemptAt(int attempts, Instant now) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long exp = Math.min(maxDelayMs, baseDelayMs << shift);
+        long half = exp / 2;
+        long delay = half + ThreadLocalRandom.current().nextLong(half + 1);
+        return now.plusMillis(delay);
+    }
+
+    // Enquanto uma tentativa está em andamento a linha fica "reservada" até este
+    // instante; se o processo cair no meio do envio, o agendador a retoma depois.
+    public Instant leaseUntil(Instant now) {
+        return now.plusMillis(leaseMs);
+    }
+}
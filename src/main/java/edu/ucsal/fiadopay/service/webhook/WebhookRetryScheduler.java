@@ -0,0 +1,79 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.repo.WebhookDeliveryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Redespacha entregas cujo {@code nextAttemptAt} já venceu. Nenhuma thread fica
+ * parada esperando um retry: o estado vive em {@code webhook_table} e esta
+ * varredura periódica o retoma, inclusive depois de um restart.
+ * <p>
+ * O lease é um UPDATE condicional síncrono, como o claim da outbox: só despacha
+ * o que este claim reservou, então outra instância (ou esta depois de um
+ * restart) que leia as mesmas linhas vencidas não manda o webhook de novo.
+ */
+@Slf4j
+@Component
+public class WebhookRetryScheduler {
+
+    private final WebhookDeliveryRepository deliveries;
+    private final WebhookDeliveryService deliveryService;
+    private final WebhookRetryPolicy retryPolicy;
+    private final int batchSize;
+
+    public WebhookRetryScheduler(
+            WebhookDeliveryRepository deliveries,
+            WebhookDeliveryService deliveryService,
+            WebhookRetryPolicy retryPolicy,
+            @Value("${fiadopay.webhook-retry.batch-size:100}") int batchSize
+    ) {
+        this.deliveries = deliveries;
+        this.deliveryService = deliveryService;
+        this.retryPolicy = retryPolicy;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        long pending = deliveries.countByDeliveredFalseAndNextAttemptAtNotNull();
+        if (pending > 0) {
+            log.info("Retomando {} webhooks pendentes após o boot", pending);
+        }
+        dispatchDue();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${fiadopay.webhook-retry.poll-ms:1000}",
+            initialDelayString = "${fiadopay.webhook-retry.poll-ms:1000}"
+    )
+    public synchronized void dispatchDue() {
+        Instant now = Instant.now();
+        var due = deliveries.findByDeliveredFalseAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                now, PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        var candidates = due.stream().filter(d -> !deliveryService.isInFlight(d.getId())).toList();
+        Instant leaseUntil = retryPolicy.leaseUntil(now);
+        var claimed = deliveries.claim(candidates.stream().map(WebhookDelivery::getId).toList(), now, leaseUntil);
+
+        for (var d : candidates) {
+            if (!claimed.contains(d.getId())) {
+                continue;
+            }
+            d.setNextAttemptAt(leaseUntil);
+            deliveryService.dispatch(d);
+        }
+        log.debug("Retry de webhooks: {} vencidos, {} reservados", due.size(), claimed.size());
+    }
+}
@@ -1,26 +1,41 @@
 package edu.ucsal.fiadopay.service.webhook;
 
 import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class WebhookSender {
 
-    public boolean send(WebhookDelivery d) throws Exception {
-        var client = HttpClient.newHttpClient();
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    public WebhookSender(
+            @Qualifier("webhookHttpClient") HttpClient client,
+            @Value("${fiadopay.webhook-request-timeout-ms:5000}") long requestTimeoutMs
+    ) {
+        this.client = client;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    }
+
+    public CompletableFuture<Boolean> send(WebhookDelivery d) {
         var req = HttpRequest.newBuilder(URI.create(d.getTargetUrl()))
+                .timeout(requestTimeout)
                 .header("Content-Type", "application/json")
                 .header("X-Event-Type", d.getEventType())
                 .header("X-Signature", d.getSignature())
-                .POST(HttpRequest.BodyPublishers.ofString(d.getPayload()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(d.getPayload()))
                 .build();
 
-        var res = client.send(req, HttpResponse.BodyHandlers.ofString());
-        return res.statusCode() >= 200 && res.statusCode() < 300;
+        return client.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .thenApply(res -> res.statusCode() >= 200 && res.statusCode() < 300);
     }
 }
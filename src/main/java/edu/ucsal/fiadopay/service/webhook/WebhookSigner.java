@@ -3,21 +3,41 @@ package edu.ucsal.fiadopay.service.webhook;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
 
 @Service
 public class WebhookSigner {
 
-    @Value("${fiadopay.webhook-secret}")
-    String secret;
+    // Mac já inicializado com a chave; cópias (clone) herdam o estado pronto
+    // sem repetir getInstance/init.
+    private final Mac prototype;
+    private final ThreadLocal<Mac> macs;
 
-    public String sign(String payload) {
+    public WebhookSigner(@Value("${fiadopay.webhook-secret}") String secret) {
         try {
-            var mac = javax.crypto.Mac.getInstance("HmacSHA256");
-            mac.init(new javax.crypto.spec.SecretKeySpec(secret.getBytes(), "HmacSHA256"));
-            return Base64.getEncoder().encodeToString(mac.doFinal(payload.getBytes()));
-        } catch (Exception e) {
-            return "";
+            prototype = Mac.getInstance("HmacSHA256");
+            prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+        macs = ThreadLocal.withInitial(this::copy);
+    }
+
+    public String sign(byte[] payload) {
+        // Threads virtuais são descartáveis: um ThreadLocal nunca seria reaproveitado.
+        Mac mac = Thread.currentThread().isVirtual() ? copy() : macs.get();
+        return Base64.getEncoder().encodeToString(mac.doFinal(payload));
+    }
+
+    private Mac copy() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Mac não suporta clone", e);
         }
     }
 }
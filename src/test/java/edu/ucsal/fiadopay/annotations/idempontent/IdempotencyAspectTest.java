@@ -0,0 +1,121 @@
+package edu.ucsal.fiadopay.annotations.idempontent;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyAspectTest {
+
+    PaymentRepository payments = mock(PaymentRepository.class);
+    IdempotencyRegistry registry = new IdempotencyRegistry(100, 60);
+    IdempotencyAspect aspect = new IdempotencyAspect(payments, registry, 5000);
+
+    @AfterEach
+    void cleanup() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void deveExecutarUmaUnicaVezParaRequisicoesConcorrentes() throws Throwable {
+        when(payments.findByIdempotencyKeyAndMerchantId(any(), any())).thenReturn(Optional.empty());
+
+        var release = new CountDownLatch(1);
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        when(pjp.proceed()).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "resposta";
+        });
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> results = new java.util.ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> call(pjp, "chave-1")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (var r : results) {
+                assertEquals("resposta", r.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(pjp, times(1)).proceed();
+    }
+
+    @Test
+    void deveResponderRepeticaoComStatusAtualDoPagamento() throws Throwable {
+        when(payments.findByIdempotencyKeyAndMerchantId(any(), any())).thenReturn(Optional.empty());
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        when(pjp.proceed()).thenReturn(new PaymentResponse("pay_1", null, "BRL", null, Status.PENDING, null, null, null));
+        // entre a criação e a repetição o pagamento foi aprovado e reembolsado
+        var current = new Payment();
+        current.setId("pay_1");
+        current.setStatus(Status.REFUNDED);
+        when(payments.findById("pay_1")).thenReturn(Optional.of(current));
+
+        call(pjp, "chave-2");
+        var second = (PaymentResponse) call(pjp, "chave-2");
+
+        assertEquals(Status.REFUNDED, second.status());
+        verify(pjp, times(1)).proceed();
+        // a chave não é procurada de novo: o cache leva direto ao id
+        verify(payments, times(1)).findByIdempotencyKeyAndMerchantId("chave-2", 1L);
+    }
+
+    @Test
+    void deveResponderRepeticaoDoCacheSemIrAoBancoDepoisDaDecisao() throws Throwable {
+        when(payments.findByIdempotencyKeyAndMerchantId(any(), any())).thenReturn(Optional.empty());
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        when(pjp.proceed()).thenReturn(new PaymentResponse("pay_1", null, "BRL", null, Status.PENDING, null, null, null));
+
+        call(pjp, "chave-3");
+        // o processador publica a decisão; um reembolso chega e a aprovação atrasada não o desfaz
+        registry.statusChanged("pay_1", Status.APPROVED);
+        registry.statusChanged("pay_1", Status.REFUNDED);
+        registry.statusChanged("pay_1", Status.APPROVED);
+        var replay = (PaymentResponse) call(pjp, "chave-3");
+
+        assertEquals(Status.REFUNDED, replay.status());
+        verify(pjp, times(1)).proceed();
+        verify(payments, never()).findById(any());
+    }
+
+    private Object call(ProceedingJoinPoint pjp, String idemKey) throws Exception {
+        var request = new MockHttpServletRequest();
+        request.addHeader("Idempotency-Key", idemKey);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        var merchant = MerchantSnapshot.builder().id(1L).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(merchant, null, List.of()));
+        try {
+            return aspect.handleIdempotency(pjp);
+        } catch (Throwable e) {
+            throw new ExecutionException(e);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
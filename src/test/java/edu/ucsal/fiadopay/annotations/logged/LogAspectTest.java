@@ -0,0 +1,68 @@
+package edu.ucsal.fiadopay.annotations.logged;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogAspectTest {
+
+    static class Target {
+        @Logged("teste")
+        public String ok() { return "ok"; }
+
+        @Logged("teste")
+        public String falha() { throw new IllegalStateException("boom"); }
+    }
+
+    SimpleMeterRegistry registry;
+    Target proxy;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        var factory = new AspectJProxyFactory(new Target());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new LogAspect(registry));
+        proxy = factory.getProxy();
+    }
+
+    @Test
+    void deveRegistrarTimerPorResultado() {
+        proxy.ok();
+        proxy.ok();
+        assertThrows(IllegalStateException.class, () -> proxy.falha());
+
+        var success = registry.get("fiadopay.logged")
+                .tags("name", "teste", "method", "Target.ok", "outcome", "success").timer();
+        var error = registry.get("fiadopay.logged")
+                .tags("name", "teste", "method", "Target.falha", "outcome", "error").timer();
+
+        assertEquals(2, success.count());
+        assertEquals(1, error.count());
+    }
+
+    @Test
+    void deveMascararCamposSensiveisDosArgumentos() {
+        var merchant = MerchantSnapshot.builder().id(7L).clientSecretHash("$2a$hash").build();
+        var req = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("10.00"), "ord-1",
+                Map.of("cardNumber", "4111111111111111"));
+
+        String rendered = LoggedArgs.render(new Object[]{merchant, "idem-1", req});
+
+        assertTrue(rendered.contains("id=7"));
+        assertTrue(rendered.contains("clientSecretHash=***"));
+        assertTrue(rendered.contains("details=***"));
+        assertTrue(rendered.contains("amount=10.00"));
+        assertFalse(rendered.contains("4111"));
+        assertFalse(rendered.contains("$2a$hash"));
+    }
+}
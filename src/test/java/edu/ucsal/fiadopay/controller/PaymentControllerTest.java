@@ -0,0 +1,138 @@
+package edu.ucsal.fiadopay.controller;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentCursor;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.infra.Exceptions.GlobalExceptionHandler;
+import edu.ucsal.fiadopay.service.payment.PaymentExportService;
+import edu.ucsal.fiadopay.service.payment.PaymentOutcomeRegistry;
+import edu.ucsal.fiadopay.service.payment.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentControllerTest {
+
+    @Mock PaymentService service;
+    @Mock PaymentExportService exportService;
+    @Mock PaymentOutcomeRegistry outcomes;
+
+    MockMvc mvc;
+    MerchantSnapshot merchant = MerchantSnapshot.builder().id(100L).build();
+
+    @BeforeEach
+    void setup() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(merchant, null, List.of()));
+        mvc = MockMvcBuilders
+                .standaloneSetup(new PaymentController(service, exportService, outcomes))
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void deveResponder400ParaCursorInvalido() throws Exception {
+        when(service.listPayments(any(), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    PaymentCursor.decode(inv.getArgument(2));
+                    return null;
+                });
+
+        var response = mvc.perform(get("/fiadopay/gateway/payments").param("cursor", "nao-e-cursor"))
+                .andReturn().getResponse();
+
+        assertError(response, 400, "Invalid cursor");
+    }
+
+    @Test
+    void deveResponder400ParaFormatoDeExportacaoInvalido() throws Exception {
+        var response = mvc.perform(get("/fiadopay/gateway/payments/export").param("format", "xml"))
+                .andReturn().getResponse();
+
+        assertError(response, 400, "format must be ndjson or csv");
+
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void deveManter422DaValidacaoDaEstrategia() throws Exception {
+        when(service.createPayment(any(), any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Card details are required"));
+
+        var response = mvc.perform(post("/fiadopay/gateway/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"method\":\"CARD\",\"currency\":\"BRL\",\"amount\":10.00}"))
+                .andReturn().getResponse();
+
+        assertError(response, 422, "Card details are required");
+    }
+
+    @Test
+    void deveEncadearWaitRepetidoNaCriacaoEmAndamento() throws Exception {
+        var approved = new PaymentResponse("pay_1", BigDecimal.TEN, "BRL", MethodPayment.CARD,
+                Status.APPROVED, Instant.now(), null, null);
+        when(outcomes.awaitInFlight(100L, "k1", 5)).thenReturn(CompletableFuture.completedFuture(approved));
+
+        var started = mvc.perform(post("/fiadopay/gateway/payments").param("wait", "5")
+                        .header("Idempotency-Key", "k1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"method\":\"CARD\",\"currency\":\"BRL\",\"amount\":10.00}"))
+                .andReturn();
+        var response = mvc.perform(asyncDispatch(started)).andReturn().getResponse();
+
+        assertEquals(201, response.getStatus());
+        assertTrue(response.getContentAsString().contains("\"status\":\"APPROVED\""));
+        // não passou pelo aspecto (que bloquearia a thread esperando a outra execução)
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void deveContinuarRespondendo409ParaRuntimeException() throws Exception {
+        when(service.getPayment(any(), any())).thenThrow(new IllegalStateException("conflito"));
+
+        var response = mvc.perform(get("/fiadopay/gateway/payments/pay_1"))
+                .andReturn().getResponse();
+
+        assertEquals(409, response.getStatus());
+    }
+
+    private static void assertError(MockHttpServletResponse response, int status, String message) throws Exception {
+        assertEquals(status, response.getStatus());
+        assertTrue(response.getContentAsString().contains("\"message\":\"" + message + "\""),
+                response.getContentAsString());
+    }
+}
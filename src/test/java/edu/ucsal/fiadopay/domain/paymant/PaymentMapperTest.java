@@ -0,0 +1,55 @@
+package edu.ucsal.fiadopay.domain.paymant;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.strategy.CardPaymentStrategy;
+import edu.ucsal.fiadopay.infra.id.UuidV7Generator;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentMapperTest {
+
+    // mesma config de datas do ObjectMapper do Spring Boot
+    ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Test
+    void deveSerializarDetailsComoObjetoENaoComoString() throws Exception {
+        var strategy = new CardPaymentStrategy(new ObjectMapper(), new UuidV7Generator());
+        var merchant = MerchantSnapshot.builder().id(1L).interest(2.0).build();
+        // detailsJson como a estratégia grava na coluna json (e como volta dela)
+        var payment = strategy.process(new PaymentRequest(MethodPayment.CARD, "BRL",
+                new BigDecimal("100.00"), "pedido-1", Map.of("installments", 2)), merchant, "k1");
+        payment.setCreatedAt(Instant.parse("2026-01-01T00:00:00Z"));
+
+        JsonNode body = json.readTree(json.writeValueAsString(PaymentMapper.toResponse(payment)));
+
+        JsonNode details = body.get("details");
+        assertTrue(details.isObject(), "details saiu como " + details.getNodeType() + ": " + details);
+        assertEquals(2, details.get("installments").asInt());
+        assertEquals("pedido-1", body.get("metadataOrderId").asText());
+    }
+
+    @Test
+    void deveSerializarDetailsNuloComoNull() throws Exception {
+        var payment = new Payment();
+        payment.setId("pay_1");
+        payment.setMethod(MethodPayment.CARD);
+        payment.setStatus(Status.PENDING);
+
+        String out = json.writeValueAsString(PaymentMapper.toResponse(payment));
+
+        assertTrue(out.contains("\"details\":null"), out);
+        assertTrue(json.readTree(out).get("details").isNull());
+    }
+}
@@ -0,0 +1,84 @@
+package edu.ucsal.fiadopay.domain.paymant.factory;
+
+import edu.ucsal.fiadopay.annotations.paymentMethod.PaymentMethod;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.strategy.PaymentStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentFactoryImplTest {
+
+    @PaymentMethod(type = MethodPayment.CARD)
+    static class CardStub implements PaymentStrategy {
+        public Payment process(PaymentRequest request, MerchantSnapshot merchant, String idemKey) { return null; }
+    }
+
+    @PaymentMethod(type = MethodPayment.CARD)
+    static class OtherCardStub implements PaymentStrategy {
+        public Payment process(PaymentRequest request, MerchantSnapshot merchant, String idemKey) { return null; }
+    }
+
+    static class Unannotated implements PaymentStrategy {
+        public Payment process(PaymentRequest request, MerchantSnapshot merchant, String idemKey) { return null; }
+    }
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    Set<MethodPayment> disabled = EnumSet.of(MethodPayment.BOLETO, MethodPayment.TICKET);
+
+    @Test
+    void deveResolverEstrategiaMesmoAtrasDeProxy() {
+        var proxyFactory = new ProxyFactory(new CardStub());
+        proxyFactory.setProxyTargetClass(true);
+        PaymentStrategy proxy = (PaymentStrategy) proxyFactory.getProxy();
+
+        var factory = new PaymentFactoryImpl(List.of(proxy), disabled, registry);
+
+        assertSame(proxy, factory.getStrategy(MethodPayment.CARD));
+        assertSame(proxy, factory.getStrategy("card"));
+        assertEquals(2.0, registry.get("fiadopay.payment.strategy.dispatch").tag("method", "CARD").counter().count());
+    }
+
+    @Test
+    void deveFalharNoBootComEstrategiaDuplicada() {
+        assertThrows(IllegalStateException.class,
+                () -> new PaymentFactoryImpl(List.of(new CardStub(), new OtherCardStub()), disabled, registry));
+    }
+
+    @Test
+    void deveFalharNoBootComEstrategiaSemAnotacao() {
+        assertThrows(IllegalStateException.class,
+                () -> new PaymentFactoryImpl(List.of(new Unannotated()), disabled, registry));
+    }
+
+    @Test
+    void deveRecusarMetodoSemEstrategia() {
+        var factory = new PaymentFactoryImpl(List.of(new CardStub()), disabled, registry);
+
+        assertThrows(ResponseStatusException.class, () -> factory.getStrategy(MethodPayment.BOLETO));
+        assertThrows(ResponseStatusException.class, () -> factory.getStrategy("PIX"));
+    }
+
+    @Test
+    void deveFalharNoBootComMetodoSemEstrategiaQueNaoFoiDesabilitado() {
+        var ex = assertThrows(IllegalStateException.class,
+                () -> new PaymentFactoryImpl(List.of(new CardStub()), EnumSet.of(MethodPayment.BOLETO), registry));
+        assertTrue(ex.getMessage().contains("TICKET"));
+    }
+
+    @Test
+    void deveFalharNoBootComMetodoDesabilitadoQueTemEstrategia() {
+        assertThrows(IllegalStateException.class, () -> new PaymentFactoryImpl(List.of(new CardStub()),
+                EnumSet.of(MethodPayment.CARD, MethodPayment.BOLETO, MethodPayment.TICKET), registry));
+    }
+}
@@ -0,0 +1,42 @@
+package edu.ucsal.fiadopay.domain.paymant.strategy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.infra.id.UuidV7Generator;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardPaymentStrategyTest {
+
+    CardPaymentStrategy strategy = new CardPaymentStrategy(new ObjectMapper(), new UuidV7Generator());
+    MerchantSnapshot merchant = MerchantSnapshot.builder().id(1L).interest(2.0).build();
+
+    @Test
+    void deveCalcularParcelas() {
+        var payment = strategy.process(request(Map.of("installments", 2)), merchant, "k1");
+
+        assertEquals(new BigDecimal("100.00"), payment.getAmount());
+        assertTrue(payment.getDetailsJson().contains("\"installments\":2"));
+    }
+
+    @Test
+    void deveRecusarCartaoSemDetailsOuSemParcelas() {
+        for (Object details : new Object[]{null, Map.of(), Map.of("installments", 0)}) {
+            var ex = assertThrows(ResponseStatusException.class,
+                    () -> strategy.process(request(details), merchant, "k1"));
+            assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+        }
+    }
+
+    private static PaymentRequest request(Object details) {
+        return new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("100.00"), null, details);
+    }
+}
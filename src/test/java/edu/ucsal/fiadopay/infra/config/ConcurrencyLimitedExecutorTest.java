@@ -0,0 +1,55 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitedExecutorTest {
+
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger rejected = new AtomicInteger();
+
+    @AfterEach
+    void cleanup() {
+        release.countDown();
+    }
+
+    @Test
+    void deveLimitarBacklogMesmoSemTetoDeConcorrencia() throws Exception {
+        var executor = new ConcurrencyLimitedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 0,
+                3, (task, pool) -> rejected.incrementAndGet());
+        var started = new CountDownLatch(3);
+
+        for (int i = 0; i < 5; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, rejected.get());
+        // a sobrecarga aparece nos gauges
+        assertEquals(3, executor.active());
+        assertEquals(0, executor.queued());
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.active());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
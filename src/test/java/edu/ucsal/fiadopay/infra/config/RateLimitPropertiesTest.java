@@ -0,0 +1,28 @@
+package edu.ucsal.fiadopay.infra.config;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPropertiesTest {
+
+    Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    void deveRecusarTaxaOuRajadaInvalidaInclusiveNasExcecoes() {
+        var properties = new RateLimitProperties();
+        assertTrue(validator.validate(properties).isEmpty());
+
+        var override = new RateLimitProperties.Limit();
+        override.setRate(0);
+        override.setBurst(10);
+        properties.getMerchants().put("loja", override);
+        assertEquals(1, validator.validate(properties).size());
+
+        override.setRate(5);
+        properties.setBurst(0);
+        assertEquals(1, validator.validate(properties).size());
+    }
+}
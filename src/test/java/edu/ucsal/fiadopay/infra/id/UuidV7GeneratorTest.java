@@ -0,0 +1,51 @@
+package edu.ucsal.fiadopay.infra.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+
+    private final UuidV7Generator generator = new UuidV7Generator();
+
+    @Test
+    void deveGerarUuidVersao7OrdenadoNoTempo() {
+        long before = System.currentTimeMillis();
+        String previous = "";
+        for (int i = 0; i < 10_000; i++) {
+            String id = generator.next(IdGenerator.PAYMENT);
+            assertTrue(id.compareTo(previous) > 0, "ids devem ser crescentes");
+            previous = id;
+        }
+
+        UUID uuid = generator.nextUuid();
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertTrue((uuid.getMostSignificantBits() >>> 16) >= before);
+    }
+
+    @Test
+    void naoDeveRepetirIdsEntreThreads() throws Exception {
+        Set<UUID> seen = ConcurrentHashMap.newKeySet();
+        try (var pool = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        assertTrue(seen.add(generator.nextUuid()));
+                    }
+                }));
+            }
+            for (var f : futures) f.get();
+        }
+        assertEquals(40_000, seen.size());
+    }
+}
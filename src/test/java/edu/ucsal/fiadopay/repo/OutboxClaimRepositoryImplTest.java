@@ -0,0 +1,43 @@
+package edu.ucsal.fiadopay.repo;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxClaimRepositoryImplTest {
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    OutboxClaimRepositoryImpl repo = new OutboxClaimRepositoryImpl(jdbc);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveDecidirOClaimPeloTokenENaoPelosContadores() throws Exception {
+        var setter = ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        // o driver não informa nada: os contadores não podem decidir
+        when(jdbc.batchUpdate(anyString(), anyList(), anyInt(), setter.capture()))
+                .thenReturn(new int[][]{{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}});
+        var owner = ArgumentCaptor.forClass(Object.class);
+        when(jdbc.queryForList(startsWith("select id from outbox_table where lease_owner"), eq(Long.class),
+                owner.capture(), eq(1L), eq(2L)))
+                .thenReturn(List.of(1L));
+
+        var claimed = repo.claim(List.of(1L, 2L), Instant.now(), Instant.now().plusSeconds(30));
+
+        assertEquals(Set.of(1L), claimed);
+        // o SELECT procura o mesmo token que o UPDATE gravou
+        var ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps, 1L);
+        verify(ps).setString(2, (String) owner.getValue());
+    }
+}
@@ -0,0 +1,49 @@
+package edu.ucsal.fiadopay.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PaymentNotificationRepositoryImplTest {
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    PaymentNotificationRepositoryImpl repo = new PaymentNotificationRepositoryImpl(jdbc);
+
+    @Test
+    void deveAceitarSoOsPagamentosQueFicaramComONossoOccurredAt() throws Exception {
+        Instant t = Instant.parse("2026-01-01T00:00:00.123456789Z");
+        // o driver não informa nada: os contadores não podem decidir
+        when(jdbc.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenReturn(new int[][]{{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}});
+        var rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn("pay_1", "pay_2");
+        when(rs.getObject(2, OffsetDateTime.class)).thenReturn(
+                // na precisão da coluna
+                Instant.parse("2026-01-01T00:00:00.123456Z").atOffset(ZoneOffset.UTC),
+                // pay_2 já tem um estado mais novo
+                t.plusSeconds(5).atOffset(ZoneOffset.UTC));
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbc).query(startsWith("select id, notified_at from payment_table"),
+                any(RowCallbackHandler.class), any(Object[].class));
+
+        var accepted = repo.markNotified(Map.of("pay_1", t, "pay_2", t));
+
+        assertEquals(Set.of("pay_1"), accepted);
+    }
+}
@@ -0,0 +1,49 @@
+package edu.ucsal.fiadopay.repo;
+
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PaymentTransitionRepositoryImplTest {
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    PaymentTransitionRepositoryImpl repo = new PaymentTransitionRepositoryImpl(jdbc);
+
+    @Test
+    void deveConferirNoBancoAsLinhasSemContador() {
+        var transitions = new LinkedHashMap<String, PaymentTransition>();
+        transitions.put("pay_1", PaymentTransition.APPROVE);
+        transitions.put("pay_2", PaymentTransition.APPROVE);
+        transitions.put("pay_3", PaymentTransition.APPROVE);
+        transitions.put("pay_4", PaymentTransition.APPROVE);
+        when(jdbc.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class)))
+                .thenReturn(new int[]{1, Statement.SUCCESS_NO_INFO, 0, Statement.SUCCESS_NO_INFO});
+        // pay_4 foi aprovado por outro decisor antes: o updated_at não é o nosso
+        when(jdbc.queryForList(startsWith("select id from payment_table"), eq(String.class),
+                eq("APPROVED"), any(), eq("pay_2"), eq("pay_4")))
+                .thenReturn(List.of("pay_2"));
+
+        var won = repo.transitionAll(transitions, Instant.now());
+
+        assertEquals(Set.of("pay_1", "pay_2"), won);
+    }
+
+    @Test
+    void naoDeveConsultarQuandoODriverInformaOsContadores() {
+        when(jdbc.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenReturn(new int[]{0});
+
+        assertTrue(repo.transitionAll(java.util.Map.of("pay_1", PaymentTransition.REFUND), Instant.now()).isEmpty());
+        verify(jdbc, never()).queryForList(anyString(), eq(String.class), any(Object[].class));
+    }
+}
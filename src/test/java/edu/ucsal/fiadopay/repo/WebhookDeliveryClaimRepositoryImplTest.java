@@ -0,0 +1,43 @@
+package edu.ucsal.fiadopay.repo;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WebhookDeliveryClaimRepositoryImplTest {
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    WebhookDeliveryClaimRepositoryImpl repo = new WebhookDeliveryClaimRepositoryImpl(jdbc);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveReservarSoAsEntregasQueFicaramComONossoToken() throws Exception {
+        var setter = ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        when(jdbc.batchUpdate(startsWith("update webhook_table set next_attempt_at"), anyList(), anyInt(),
+                setter.capture()))
+                .thenReturn(new int[][]{{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}});
+        var owner = ArgumentCaptor.forClass(Object.class);
+        // a entrega 2 foi reservada por outra instância entre a leitura e o claim
+        when(jdbc.queryForList(startsWith("select id from webhook_table where lease_owner"), eq(Long.class),
+                owner.capture(), eq(1L), eq(2L)))
+                .thenReturn(List.of(1L));
+
+        var claimed = repo.claim(List.of(1L, 2L), Instant.now(), Instant.now().plusSeconds(30));
+
+        assertEquals(Set.of(1L), claimed);
+        var ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps, 1L);
+        verify(ps).setString(2, (String) owner.getValue());
+    }
+}
@@ -0,0 +1,34 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerchantCredentialCacheTest {
+
+    private final MerchantCredentialCache cache = new MerchantCredentialCache(new SimpleMeterRegistry(), 100, 60, 30);
+    private final MerchantSnapshot merchant = MerchantSnapshot.builder().id(1L).clientId("cli_1").build();
+
+    @Test
+    void deveAcharACredencialSoComOSegredoCerto() {
+        cache.putVerified("cli_1", "segredo", merchant);
+
+        assertSame(merchant, cache.getVerified("cli_1", "segredo"));
+        // o Mac reaproveitado não pode carregar estado da chave anterior
+        assertNull(cache.getVerified("cli_1", "outro"));
+        assertSame(merchant, cache.getVerified("cli_1", "segredo"));
+    }
+
+    @Test
+    void deveAcharIgualEmThreadVirtual() throws Exception {
+        cache.putVerified("cli_1", "segredo", merchant);
+
+        try (var vt = Executors.newVirtualThreadPerTaskExecutor()) {
+            assertSame(merchant, vt.submit(() -> cache.getVerified("cli_1", "segredo")).get());
+        }
+    }
+}
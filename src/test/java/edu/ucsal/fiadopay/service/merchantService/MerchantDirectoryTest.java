@@ -0,0 +1,65 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.merchant.dto.Status;
+import edu.ucsal.fiadopay.repo.MerchantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantDirectoryTest {
+
+    @Mock
+    MerchantRepository merchantRepository;
+
+    MerchantDirectory directory;
+    Merchant merchant;
+
+    @BeforeEach
+    void setup() {
+        directory = new MerchantDirectory(merchantRepository, new SimpleMeterRegistry(), 100, 600);
+        merchant = Merchant.builder()
+                .id(7L)
+                .clientId("cli_7")
+                .clientSecret("hash")
+                .webhookUrl("https://loja.com/wh")
+                .status(Status.ACTIVE)
+                .interest(2.0)
+                .build();
+    }
+
+    @Test
+    void deveIndexarPorIdEClientIdComUmaConsulta() {
+        when(merchantRepository.findById(7L)).thenReturn(Optional.of(merchant));
+
+        MerchantSnapshot byId = directory.findById(7L).orElseThrow();
+        MerchantSnapshot byClientId = directory.findByClientId("cli_7").orElseThrow();
+
+        assertSame(byId, byClientId);
+        assertEquals("https://loja.com/wh", byId.webhookUrl());
+        verify(merchantRepository, times(1)).findById(7L);
+        verify(merchantRepository, never()).findByClientId(any());
+    }
+
+    @Test
+    void deveRecarregarDoBancoDepoisDeInvalidar() {
+        when(merchantRepository.findById(7L)).thenReturn(Optional.of(merchant));
+        directory.findById(7L);
+
+        merchant.setWebhookUrl("https://loja.com/novo");
+        directory.invalidate(merchant);
+
+        assertEquals("https://loja.com/novo", directory.findById(7L).orElseThrow().webhookUrl());
+        verify(merchantRepository, times(2)).findById(7L);
+    }
+}
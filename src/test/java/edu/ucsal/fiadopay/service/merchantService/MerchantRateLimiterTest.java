@@ -0,0 +1,65 @@
+package edu.ucsal.fiadopay.service.merchantService;
+
+import edu.ucsal.fiadopay.infra.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerchantRateLimiterTest {
+
+    AtomicLong now = new AtomicLong(1_000_000_000L);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    RateLimitProperties properties = new RateLimitProperties();
+    MerchantRateLimiter limiter;
+
+    @BeforeEach
+    void setup() {
+        properties.setRate(10);  // 1 a cada 100ms
+        properties.setBurst(3);
+        var vip = new RateLimitProperties.Limit();
+        vip.setRate(1000);
+        vip.setBurst(50);
+        properties.getMerchants().put("vip", vip);
+        limiter = new MerchantRateLimiter(properties, registry, now::get);
+    }
+
+    @Test
+    void deveAceitarRajadaERecusarComTempoDeEspera() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(1L, "loja"));
+        }
+
+        long wait = limiter.tryAcquire(1L, "loja");
+        assertEquals(100_000_000L, wait);
+        // uma série por merchant, pelo id interno
+        assertEquals(1.0, registry.get("fiadopay.ratelimit.throttled").tag("merchant_id", "1").counter().count());
+
+        // depois de esperar o indicado, cabe mais uma
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire(1L, "loja"));
+        assertTrue(limiter.tryAcquire(1L, "loja") > 0);
+    }
+
+    @Test
+    void deveIsolarMerchantsEAplicarLimitePersonalizado() {
+        for (int i = 0; i < 3; i++) limiter.tryAcquire(1L, "loja");
+        assertTrue(limiter.tryAcquire(1L, "loja") > 0);
+
+        assertEquals(0, limiter.tryAcquire(2L, "outra"));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, limiter.tryAcquire(3L, "vip"));
+        }
+        assertTrue(limiter.tryAcquire(3L, "vip") > 0);
+
+        assertEquals(1.0, registry.get("fiadopay.ratelimit.throttled").tag("merchant_id", "1").counter().count());
+        assertEquals(1.0, registry.get("fiadopay.ratelimit.throttled").tag("merchant_id", "3").counter().count());
+        assertEquals(0.0, registry.get("fiadopay.ratelimit.throttled").tag("merchant_id", "2").counter().count());
+        // o clientId não aparece em nenhuma tag
+        registry.getMeters().forEach(m -> m.getId().getTags()
+                .forEach(t -> assertNotEquals("loja", t.getValue())));
+    }
+}
@@ -34,6 +34,12 @@ class MerchantServiceTest {
     @Mock
     PasswordEncoder passwordEncoder;
 
+    @Mock
+    MerchantCredentialCache credentialCache;
+
+    @Mock
+    MerchantDirectory merchantDirectory;
+
     @InjectMocks
     MerchantService service;
 
@@ -64,6 +70,7 @@ class MerchantServiceTest {
         assertNotNull(response);
         assertEquals(dto.name(), response.name());
         verify(merchantRepository, times(1)).save(any(Merchant.class));
+        verify(merchantDirectory).invalidate(any());
     }
 
     @Test
@@ -114,4 +121,39 @@ class MerchantServiceTest {
         assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
         verify(merchantRepository, never()).save(any());
     }
+
+    @Test
+    void deveAutenticarPeloCacheSemConsultarBanco() {
+        MerchantSnapshot cached = MerchantSnapshot.builder().id(7L).build();
+        when(credentialCache.getVerified("cli_1", "sec_1")).thenReturn(cached);
+
+        MerchantSnapshot result = service.findAndVerifyByClientId("cli_1", "sec_1");
+
+        assertSame(cached, result);
+        verifyNoInteractions(merchantDirectory, merchantRepository, passwordEncoder);
+    }
+
+    @Test
+    void deveUsarCacheNegativoParaClientIdDesconhecido() {
+        when(credentialCache.isUnknown("cli_x")).thenReturn(true);
+
+        assertThrows(ResponseStatusException.class,
+                () -> service.findAndVerifyByClientId("cli_x", "sec"));
+
+        verify(merchantDirectory, never()).findByClientId(any());
+    }
+
+    @Test
+    void deveGuardarCredencialVerificadaNoCache() {
+        MerchantSnapshot merchant = MerchantSnapshot.builder()
+                .clientSecretHash("hash")
+                .status(edu.ucsal.fiadopay.domain.merchant.dto.Status.ACTIVE)
+                .build();
+        when(merchantDirectory.findByClientId("cli_1")).thenReturn(java.util.Optional.of(merchant));
+        when(passwordEncoder.matches("sec_1", "hash")).thenReturn(true);
+
+        service.findAndVerifyByClientId("cli_1", "sec_1");
+
+        verify(credentialCache).putVerified("cli_1", "sec_1", merchant);
+    }
 }
@@ -1,32 +1,50 @@
 package edu.ucsal.fiadopay.service.merchantService;
 
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
+import edu.ucsal.fiadopay.annotations.validTransactionWindow.TransactionWindowValidator;
 import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
 import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
 import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
 import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentItem;
+import edu.ucsal.fiadopay.domain.paymant.dto.BatchPaymentResponse;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentCursor;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentPage;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentRequest;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentSummary;
 import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
 import edu.ucsal.fiadopay.domain.paymant.factory.PaymentFactoryImpl;
 import edu.ucsal.fiadopay.domain.paymant.strategy.PaymentStrategy;
+import edu.ucsal.fiadopay.infra.id.IdGenerator;
 import edu.ucsal.fiadopay.repo.PaymentRepository;
 
+import edu.ucsal.fiadopay.service.outbox.OutboxPublisher;
 import edu.ucsal.fiadopay.service.payment.PaymentProcessor;
 import edu.ucsal.fiadopay.service.payment.PaymentService;
-import edu.ucsal.fiadopay.service.webhook.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,25 +52,26 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class PaymentServiceTest {
 
-    @Mock ExecutorService executor;
     @Mock PaymentRepository payments;
     @Mock
     PaymentFactoryImpl factory;
     @Mock
     PaymentProcessor processor;
-    @Mock WebhookEventFactory eventFactory;
-    @Mock WebhookSigner signer;
-    @Mock WebhookDeliveryService deliveryService;
+    @Mock OutboxPublisher outbox;
+    @Mock MerchantService merchantService;
+    @Mock TransactionWindowValidator windowValidator;
+    @Mock IdGenerator ids;
+    @Spy IdempotencyRegistry idempotency = new IdempotencyRegistry(100, 60);
+    @Spy TransactionTemplate tx = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
     @InjectMocks
     PaymentService service;
 
-    Merchant merchant;
+    MerchantSnapshot merchant;
 
     @BeforeEach
     void setup() {
-        merchant = new Merchant();
-        merchant.setId(100L);
+        merchant = MerchantSnapshot.builder().id(100L).build();
     }
 
     // ---------------------------------------------------------
@@ -71,7 +90,7 @@ class PaymentServiceTest {
 
     @Test
     void deveFalharQuandoMerchantNaoTemId() {
-        Merchant m = new Merchant(); // sem ID
+        MerchantSnapshot m = MerchantSnapshot.builder().build(); // sem ID
 
         ResponseStatusException ex = assertThrows(
                 ResponseStatusException.class,
@@ -141,17 +160,216 @@ class PaymentServiceTest {
         PaymentStrategy strategy = mock(PaymentStrategy.class);
         Payment payment = mock(Payment.class);
 
-        when(factory.getStrategy("CARD")).thenReturn(strategy);
+        when(factory.getStrategy(MethodPayment.CARD)).thenReturn(strategy);
         when(strategy.process(req, merchant, "idem123")).thenReturn(payment);
 
         when(payment.getId()).thenReturn("P123");
         when(payment.getStatus()).thenReturn(Status.PENDING);
+        Merchant reference = Merchant.builder().id(100L).build();
+        when(merchantService.getReference(100L)).thenReturn(reference);
+        when(payment.getMerchant()).thenReturn(reference);
 
         PaymentResponse resp = service.createPayment(merchant, "idem123", req);
 
         assertNotNull(resp);
         assertEquals("P123", resp.id());
+        verify(payment).setMerchant(reference);
         verify(payments, times(1)).save(payment);
-        verify(executor, times(1)).submit(any(Runnable.class));
+        // o processador só recebe o pagamento pela outbox, depois do commit
+        verify(outbox).publish(argThat(e -> e.getType() == OutboxEvent.Type.PAYMENT_CREATED
+                && e.getPaymentId().equals("P123") && e.getMerchantId() == 100L));
+        verify(processor).ensureCapacity(1);
+        verifyNoMoreInteractions(processor);
+    }
+
+    // ---------------------------------------------------------
+    // TESTE DO CREATEPAYMENTS (LOTE)
+    // ---------------------------------------------------------
+
+    @Test
+    void deveCriarLoteComFalhaParcial() {
+        PaymentRequest ok = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("10.00"), null, null);
+        PaymentRequest alto = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("20000.00"), null, null);
+
+        Payment existente = new Payment();
+        existente.setId("P_OLD");
+        existente.setIdempotencyKey("k2");
+        when(payments.findByMerchantIdAndIdempotencyKeyIn(eq(100L), anyCollection())).thenReturn(List.of(existente));
+
+        PaymentStrategy strategy = mock(PaymentStrategy.class);
+        Payment novo = new Payment();
+        novo.setId("P_NEW");
+        when(factory.getStrategy(MethodPayment.CARD)).thenReturn(strategy);
+        when(strategy.process(ok, merchant, "k1")).thenReturn(novo);
+        lenient().doThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Value above the limit allowed at this time."))
+                .when(windowValidator).validate(alto);
+        when(merchantService.getReference(100L)).thenReturn(Merchant.builder().id(100L).build());
+
+        BatchPaymentResponse resp = service.createPayments(merchant, List.of(
+                new BatchPaymentItem("k1", ok),
+                new BatchPaymentItem("k2", ok),
+                new BatchPaymentItem("k1", ok),
+                new BatchPaymentItem("k3", alto)));
+
+        assertEquals(1, resp.created());
+        assertEquals(1, resp.replayed());
+        assertEquals(2, resp.failed());
+        assertEquals(List.of(201, 200, 409, 401), resp.results().stream().map(r -> r.status()).toList());
+        assertEquals("P_OLD", resp.results().get(1).payment().id());
+        verify(payments, times(1)).saveAll(List.of(novo));
+        verify(outbox, times(1)).publishAll(argThat(events -> events.size() == 1
+                && events.get(0).getPaymentId().equals("P_NEW")));
+    }
+
+    @Test
+    void deveIsolarItemComErroSemDerrubarOsOutros() {
+        PaymentRequest ok = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("10.00"), null, null);
+        PaymentRequest semDetails = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("11.00"), null, null);
+        PaymentRequest quebrado = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("12.00"), null, null);
+
+        PaymentStrategy strategy = mock(PaymentStrategy.class);
+        Payment novo = new Payment();
+        novo.setId("P_NEW");
+        when(factory.getStrategy(MethodPayment.CARD)).thenReturn(strategy);
+        when(strategy.process(ok, merchant, "k1")).thenReturn(novo);
+        when(strategy.process(semDetails, merchant, "k2"))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Card details are required"));
+        when(strategy.process(quebrado, merchant, "k3")).thenThrow(new ArithmeticException("/ by zero"));
+        when(merchantService.getReference(100L)).thenReturn(Merchant.builder().id(100L).build());
+
+        BatchPaymentResponse resp = service.createPayments(merchant, List.of(
+                new BatchPaymentItem("k1", ok),
+                new BatchPaymentItem("k2", semDetails),
+                new BatchPaymentItem("k3", quebrado)));
+
+        assertEquals(List.of(201, 422, 500), resp.results().stream().map(r -> r.status()).toList());
+        verify(payments).saveAll(List.of(novo));
+        verify(payments).flush();
+    }
+
+    @Test
+    void deveGravarItemAItemQuandoOutraRequisicaoGravouAChave() {
+        PaymentRequest a = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("10.00"), null, null);
+        PaymentRequest b = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("20.00"), null, null);
+
+        PaymentStrategy strategy = mock(PaymentStrategy.class);
+        Payment pa = new Payment();
+        pa.setId("P_A");
+        Payment pb = new Payment();
+        pb.setId("P_B");
+        Payment concorrente = new Payment();
+        concorrente.setId("P_OTHER");
+        when(factory.getStrategy(MethodPayment.CARD)).thenReturn(strategy);
+        when(strategy.process(a, merchant, "k1")).thenReturn(pa);
+        when(strategy.process(b, merchant, "k2")).thenReturn(pb);
+        when(merchantService.getReference(100L)).thenReturn(Merchant.builder().id(100L).build());
+        // lote inteiro falha; depois k1 passa sozinho e k2 já existe
+        doThrow(new DataIntegrityViolationException("uk_payment_merchant_idempotency"))
+                .doNothing()
+                .doThrow(new DataIntegrityViolationException("uk_payment_merchant_idempotency"))
+                .when(payments).flush();
+        when(payments.findByIdempotencyKeyAndMerchantId("k2", 100L)).thenReturn(Optional.of(concorrente));
+
+        BatchPaymentResponse resp = service.createPayments(merchant, List.of(
+                new BatchPaymentItem("k1", a),
+                new BatchPaymentItem("k2", b)));
+
+        assertEquals(List.of(201, 200), resp.results().stream().map(r -> r.status()).toList());
+        assertEquals("P_OTHER", resp.results().get(1).payment().id());
+        assertEquals("P_A", idempotency.responseFor(new IdempotencyRegistry.Key(100L, "k1")).id());
+    }
+
+    @Test
+    void deveRecusarItemComChaveEmAndamentoNoPostUnitario() {
+        PaymentRequest ok = new PaymentRequest(MethodPayment.CARD, "BRL", new BigDecimal("10.00"), null, null);
+        var key = new IdempotencyRegistry.Key(100L, "k1");
+        var running = new CompletableFuture<Object>();
+        idempotency.claim(key, running);
+
+        BatchPaymentResponse resp = service.createPayments(merchant, List.of(new BatchPaymentItem("k1", ok)));
+
+        assertEquals(409, resp.results().get(0).status());
+        verifyNoInteractions(factory);
+        // a reserva de quem chegou primeiro continua valendo
+        assertSame(running, idempotency.claim(key, new CompletableFuture<>()));
+    }
+
+    // ---------------------------------------------------------
+    // TESTE DO REFUND
+    // ---------------------------------------------------------
+
+    @Test
+    void deveReembolsarComUpdateCondicionalEGravarEventoNaOutbox() {
+        when(payments.transition(eq("P1"), eq(100L), eq(PaymentTransition.REFUND), any())).thenReturn(true);
+        when(ids.next(IdGenerator.REFUND)).thenReturn("ref_1");
+
+        var resp = service.refund(merchant, "P1");
+
+        assertEquals("ref_1", resp.get("id"));
+        assertEquals("REFUNDED", resp.get("status"));
+        verify(payments, never()).findById(any());
+        verify(payments, never()).save(any());
+        verifyNoInteractions(processor);
+        verify(outbox).publish(argThat(e -> e.getType() == OutboxEvent.Type.PAYMENT_UPDATED
+                && e.getPaymentId().equals("P1") && e.getStatus() == Status.REFUNDED));
+    }
+
+    @Test
+    void deveRecusarReembolsoDePagamentoNaoAprovado() {
+        Payment p = new Payment();
+        p.setId("P1");
+        p.setStatus(Status.PENDING);
+        p.setMerchant(Merchant.builder().id(100L).build());
+        when(payments.transition(eq("P1"), eq(100L), eq(PaymentTransition.REFUND), any())).thenReturn(false);
+        when(payments.findById("P1")).thenReturn(Optional.of(p));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.refund(merchant, "P1"));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verifyNoInteractions(outbox);
+    }
+
+    // ---------------------------------------------------------
+    // TESTE DO LISTPAYMENTS
+    // ---------------------------------------------------------
+
+    private PaymentSummary summary(String id, Instant createdAt) {
+        return new PaymentSummary(id, BigDecimal.TEN, "BRL", MethodPayment.CARD, Status.APPROVED, createdAt, null);
+    }
+
+    @Test
+    void deveRetornarCursorQuandoExisteProximaPagina() {
+        var filter = new PaymentFilter(Status.APPROVED, null, null, null);
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+        when(payments.search(100L, filter, null, 3)).thenReturn(List.of(
+                summary("pay_3", t.plusSeconds(2)),
+                summary("pay_2", t.plusSeconds(1)),
+                summary("pay_1", t)));
+
+        PaymentPage page = service.listPayments(merchant, filter, null, 2);
+
+        assertEquals(2, page.items().size());
+        assertEquals(new PaymentCursor(t.plusSeconds(1), "pay_2"), PaymentCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void deveContinuarDoCursorEEncerrarNaUltimaPagina() {
+        var filter = new PaymentFilter(null, null, null, null);
+        var cursor = new PaymentCursor(Instant.parse("2026-01-01T00:00:01Z"), "pay_2");
+        when(payments.search(100L, filter, cursor, 3)).thenReturn(List.of(
+                summary("pay_1", Instant.parse("2026-01-01T00:00:00Z"))));
+
+        PaymentPage page = service.listPayments(merchant, filter, cursor.encode(), 2);
+
+        assertEquals(1, page.items().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void deveRejeitarCursorInvalido() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.listPayments(merchant, new PaymentFilter(null, null, null, null), "%%%", null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
     }
 }
@@ -0,0 +1,167 @@
+package edu.ucsal.fiadopay.service.outbox;
+
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.repo.OutboxRepository;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.merchantService.MerchantDirectory;
+import edu.ucsal.fiadopay.service.payment.PaymentProcessor;
+import edu.ucsal.fiadopay.service.webhook.PaymentUpdate;
+import edu.ucsal.fiadopay.service.webhook.WebhookCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDrainerTest {
+
+    @Mock OutboxRepository outbox;
+    @Mock PaymentRepository payments;
+    @Mock MerchantDirectory merchants;
+    @Mock PaymentProcessor processor;
+    @Mock WebhookCoalescer coalescer;
+
+    OutboxPublisher publisher;
+    SimpleMeterRegistry registry;
+    OutboxDrainer drainer;
+
+    @BeforeEach
+    void setup() {
+        publisher = new OutboxPublisher(outbox);
+        registry = new SimpleMeterRegistry();
+        drainer = new OutboxDrainer(outbox, publisher, payments, merchants, processor, coalescer, registry,
+                10, 30_000, 60_000, 3, 5);
+    }
+
+    @Test
+    void deveDespacharSoOsReservadosEConfirmarNumDeleteUnico() {
+        var e1 = event(1L, OutboxEvent.Type.PAYMENT_UPDATED, "pay_1");
+        var e2 = event(2L, OutboxEvent.Type.PAYMENT_UPDATED, "pay_2");
+        var e3 = event(3L, OutboxEvent.Type.PAYMENT_UPDATED, "pay_3");
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of(e1, e2, e3));
+        // e2 foi reservado por outro drainer entre a consulta e o UPDATE
+        when(outbox.claim(eq(List.of(1L, 2L, 3L)), any(), any())).thenReturn(Set.of(1L, 3L));
+        when(coalescer.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(merchants.findById(100L)).thenReturn(Optional.of(merchant()));
+
+        assertEquals(3, drainer.drainBatch());
+
+        verify(coalescer).submit(100L, new PaymentUpdate("pay_1", Status.APPROVED, e1.getCreatedAt()));
+        verify(coalescer).submit(100L, new PaymentUpdate("pay_3", Status.APPROVED, e3.getCreatedAt()));
+        verify(coalescer, never()).submit(any(), argThat(u -> u.paymentId().equals("pay_2")));
+        verify(outbox).deleteAllByIdInBatch(List.of(1L, 3L));
+        assertEquals(2.0, registry.get("fiadopay.outbox.drained").tag("type", "PAYMENT_UPDATED").counter().count());
+        assertEquals(2, registry.get("fiadopay.outbox.lag").timer().count());
+    }
+
+    @Test
+    void deveManterEventoNaOutboxQuandoProcessadorFalha() {
+        var created = event(1L, OutboxEvent.Type.PAYMENT_CREATED, "pay_1");
+        var payment = new Payment();
+        payment.setId("pay_1");
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of(created));
+        when(outbox.claim(any(), any(), any())).thenReturn(Set.of(1L));
+        when(payments.findAllById(List.of("pay_1"))).thenReturn(List.of(payment));
+        when(processor.processAll(List.of(payment)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("banco fora")));
+
+        drainer.drainBatch();
+
+        // sem ack: o lease vence e o evento volta
+        verify(outbox, never()).deleteAllByIdInBatch(any());
+        assertEquals(1.0, registry.get("fiadopay.outbox.failed").tag("type", "PAYMENT_CREATED").counter().count());
+    }
+
+    @Test
+    void naoDeveConsultarSemAvisoDentroDoIntervaloOcioso() {
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of());
+
+        drainer.drain();   // primeira varredura sempre consulta
+        drainer.drain();   // sem commit novo: não vai ao banco
+        publisher.signal();
+        drainer.drain();
+
+        verify(outbox, times(2)).findClaimable(any(), any());
+    }
+
+    @Test
+    void deveLimitarLotesPorPollEContinuarNoSeguinteSemAviso() {
+        var full = new ArrayList<OutboxEvent>();
+        for (long i = 1; i <= 10; i++) {
+            full.add(event(i, OutboxEvent.Type.PAYMENT_UPDATED, "pay_" + i));
+        }
+        // todos reservados por outro drainer: só interessa quantos lotes são lidos
+        when(outbox.claim(any(), any(), any())).thenReturn(Set.of());
+        when(outbox.findClaimable(any(), any())).thenReturn(full);
+
+        drainer.drain();
+        verify(outbox, times(3)).findClaimable(any(), any());
+
+        // fila ainda cheia: o próximo poll consulta mesmo sem commit novo
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of());
+        drainer.drain();
+        drainer.drain();
+        verify(outbox, times(4)).findClaimable(any(), any());
+    }
+
+    @Test
+    void deveEstacionarEventoQueEsgotouAsTentativas() {
+        var poison = event(1L, OutboxEvent.Type.PAYMENT_UPDATED, "pay_1");
+        poison.setAttempts(5);
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of(poison));
+        when(outbox.claim(any(), any(), any())).thenReturn(Set.of(1L));
+
+        drainer.drainBatch();
+
+        verify(outbox).park(eq(List.of(1L)), any());
+        verifyNoInteractions(coalescer);
+        verify(outbox, never()).deleteAllByIdInBatch(any());
+        assertEquals(1.0, registry.get("fiadopay.outbox.parked").tag("type", "PAYMENT_UPDATED").counter().count());
+    }
+
+    @Test
+    void deveConfirmarSemWebhookQuandoOMerchantFoiRemovido() {
+        var e1 = event(1L, OutboxEvent.Type.PAYMENT_UPDATED, "pay_1");
+        when(outbox.findClaimable(any(), any())).thenReturn(List.of(e1));
+        when(outbox.claim(any(), any(), any())).thenReturn(Set.of(1L));
+        when(merchants.findById(100L)).thenReturn(Optional.empty());
+
+        drainer.drainBatch();
+
+        verifyNoInteractions(coalescer);
+        verify(outbox).deleteAllByIdInBatch(List.of(1L));
+        assertEquals(0.0, registry.get("fiadopay.outbox.failed").tag("type", "PAYMENT_UPDATED").counter().count());
+        assertEquals(1.0, registry.get("fiadopay.outbox.orphaned").counter().count());
+    }
+
+    private static MerchantSnapshot merchant() {
+        return MerchantSnapshot.builder().id(100L).webhookUrl("http://loja/wh").build();
+    }
+
+    private static OutboxEvent event(Long id, OutboxEvent.Type type, String paymentId) {
+        var e = OutboxEvent.builder()
+                .type(type)
+                .paymentId(paymentId)
+                .merchantId(100L)
+                .status(type == OutboxEvent.Type.PAYMENT_CREATED ? Status.PENDING : Status.APPROVED)
+                .createdAt(Instant.now().minusMillis(5))
+                .build();
+        e.setId(id);
+        return e;
+    }
+}
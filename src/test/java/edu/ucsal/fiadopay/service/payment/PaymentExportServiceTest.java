@@ -0,0 +1,82 @@
+package edu.ucsal.fiadopay.service.payment;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentFilter;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentSummary;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentExportServiceTest {
+
+    @Mock PaymentRepository payments;
+    @Mock PlatformTransactionManager transactionManager;
+
+    PaymentExportService service;
+    MerchantSnapshot merchant = MerchantSnapshot.builder().id(100L).build();
+    PaymentFilter filter = new PaymentFilter(null, null, null, null);
+
+    @BeforeEach
+    void setup() {
+        service = new PaymentExportService(payments, transactionManager,
+                // mesma config de datas do ObjectMapper do Spring Boot
+                Jackson2ObjectMapperBuilder.json()
+                        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build(),
+                500);
+    }
+
+    private Stream<PaymentSummary> rows() {
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+        return Stream.of(
+                new PaymentSummary("pay_1", new BigDecimal("10.00"), "BRL", MethodPayment.CARD, Status.APPROVED, t, null),
+                new PaymentSummary("pay_2", new BigDecimal("20.50"), "BRL", MethodPayment.CARD, Status.DECLINED, t, "pedido \"7\", loja"));
+    }
+
+    private String export(PaymentExportService.Format format) throws Exception {
+        when(payments.streamAll(100L, filter, 500)).thenReturn(rows());
+        var out = new ByteArrayOutputStream();
+        service.export(merchant, filter, format).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void deveExportarUmaLinhaJsonPorPagamento() throws Exception {
+        String body = export(PaymentExportService.Format.NDJSON);
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(body.endsWith("\n"));
+        assertTrue(lines[0].startsWith("{\"id\":\"pay_1\""));
+        assertTrue(lines[0].contains("\"createdAt\":\"2026-01-01T00:00:00Z\""));
+    }
+
+    @Test
+    void deveExportarCsvComCabecalhoEEscaparTextoLivre() throws Exception {
+        String body = export(PaymentExportService.Format.CSV);
+
+        assertEquals("""
+                id,amount,currency,method,status,createdAt,metadataOrderId
+                pay_1,10.00,BRL,CARD,APPROVED,2026-01-01T00:00:00Z,
+                pay_2,20.50,BRL,CARD,DECLINED,2026-01-01T00:00:00Z,"pedido ""7"", loja"
+                """, body);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.ucsal.fiadopay.service.payment;
+
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
+import edu.ucsal.fiadopay.domain.paymant.MethodPayment;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentMapper;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.domain.paymant.dto.PaymentResponse;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PaymentOutcomeRegistryTest {
+
+    PaymentRepository payments = mock(PaymentRepository.class);
+    IdempotencyRegistry idempotency = new IdempotencyRegistry(100, 60);
+    PaymentOutcomeRegistry registry = new PaymentOutcomeRegistry(payments, idempotency, 30, 1000);
+
+    private Payment payment(String id, Status status) {
+        var p = new Payment();
+        p.setId(id);
+        p.setMethod(MethodPayment.CARD);
+        p.setAmount(BigDecimal.TEN);
+        p.setCurrency("BRL");
+        p.setStatus(status);
+        p.setCreatedAt(Instant.now());
+        return p;
+    }
+
+    @Test
+    void deveCompletarQuandoProcessadorPublica() throws Exception {
+        PaymentResponse created = PaymentMapper.toResponse(payment("pay_1", Status.PENDING));
+
+        var waiting = registry.await(created, 10);
+        assertFalse(waiting.isDone());
+
+        registry.publish(payment("pay_1", Status.APPROVED));
+
+        assertEquals(Status.APPROVED, waiting.get(1, TimeUnit.SECONDS).status());
+    }
+
+    @Test
+    void deveAtenderEsperaRegistradaDepoisDaDecisao() {
+        registry.publish(payment("pay_2", Status.DECLINED));
+
+        var waiting = registry.await(PaymentMapper.toResponse(payment("pay_2", Status.PENDING)), 10);
+
+        assertTrue(waiting.isDone());
+        assertEquals(Status.DECLINED, waiting.join().status());
+    }
+
+    @Test
+    void deveDevolverPendenteQuandoPrazoVence() {
+        PaymentResponse created = PaymentMapper.toResponse(payment("pay_3", Status.PENDING));
+
+        assertEquals(Status.PENDING, registry.await(created, 1).join().status());
+
+        // o timeout de um cliente não fecha a espera dos outros
+        var other = registry.await(created, 10);
+        registry.publish(payment("pay_3", Status.APPROVED));
+        assertEquals(Status.APPROVED, other.join().status());
+    }
+
+    @Test
+    void deveRelerDoBancoQuandoADecisaoJaSaiuDoCache() {
+        // decidido e reembolsado há mais de max-seconds: não há entrada no registro
+        when(payments.findById("pay_4")).thenReturn(Optional.of(payment("pay_4", Status.REFUNDED)));
+
+        var waiting = registry.await(PaymentMapper.toResponse(payment("pay_4", Status.PENDING)), 10);
+
+        assertTrue(waiting.isDone());
+        assertEquals(Status.REFUNDED, waiting.join().status());
+        // a próxima espera já encontra a entrada
+        registry.await(PaymentMapper.toResponse(payment("pay_4", Status.PENDING)), 10);
+        verify(payments, times(1)).findById("pay_4");
+    }
+
+    @Test
+    void deveEncadearNaCriacaoEmAndamentoSemBloquear() throws Exception {
+        var key = new IdempotencyRegistry.Key(100L, "k1");
+        var running = new CompletableFuture<Object>();
+        idempotency.claim(key, running);
+        assertNull(registry.awaitInFlight(100L, "outra", 10));
+
+        var waiting = registry.awaitInFlight(100L, "k1", 10);
+        assertFalse(waiting.isDone());
+
+        running.complete(PaymentMapper.toResponse(payment("pay_4", Status.PENDING)));
+        assertFalse(waiting.isDone());
+        registry.publish(payment("pay_4", Status.APPROVED));
+
+        assertEquals(Status.APPROVED, waiting.get(1, TimeUnit.SECONDS).status());
+    }
+
+    @Test
+    void deveResponder409QuandoACriacaoEmAndamentoNaoTerminaNoPrazo() {
+        var running = new CompletableFuture<Object>();
+        idempotency.claim(new IdempotencyRegistry.Key(100L, "k2"), running);
+
+        var waiting = registry.awaitInFlight(100L, "k2", 1);
+
+        var error = assertThrows(ExecutionException.class, () -> waiting.get(3, TimeUnit.SECONDS));
+        var status = assertInstanceOf(ResponseStatusException.class, error.getCause());
+        assertEquals(HttpStatus.CONFLICT, status.getStatusCode());
+        // o timeout é da cópia: a execução compartilhada continua aberta
+        assertFalse(running.isDone());
+    }
+}
@@ -0,0 +1,157 @@
+package edu.ucsal.fiadopay.service.payment;
+
+import edu.ucsal.fiadopay.annotations.idempontent.IdempotencyRegistry;
+import edu.ucsal.fiadopay.domain.merchant.Merchant;
+import edu.ucsal.fiadopay.domain.outbox.OutboxEvent;
+import edu.ucsal.fiadopay.domain.paymant.Payment;
+import edu.ucsal.fiadopay.domain.paymant.PaymentTransition;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.infra.Exceptions.ServiceOverloadedException;
+import edu.ucsal.fiadopay.repo.OutboxRepository;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.outbox.OutboxPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentProcessorTest {
+
+    @Mock PaymentRepository payments;
+    @Mock OutboxPublisher outbox;
+    @Mock OutboxRepository outboxEvents;
+    @Mock PlatformTransactionManager transactionManager;
+
+    ScheduledExecutorService timer;
+    SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    // executor com "fila cheia" nas primeiras n submissões
+    static class RejectingExecutor extends AbstractExecutorService {
+        final AtomicInteger rejections;
+        RejectingExecutor(int n) { rejections = new AtomicInteger(n); }
+        @Override public void execute(Runnable command) {
+            if (rejections.getAndDecrement() > 0) throw new RejectedExecutionException("cheio");
+            command.run();
+        }
+        @Override public void shutdown() {}
+        @Override public List<Runnable> shutdownNow() { return List.of(); }
+        @Override public boolean isShutdown() { return false; }
+        @Override public boolean isTerminated() { return false; }
+        @Override public boolean awaitTermination(long t, TimeUnit u) { return true; }
+    }
+
+    private PaymentProcessor processor(RejectingExecutor executor, long delay, int maxPending) {
+        var p = new PaymentProcessor(payments, outbox, outboxEvents, new TransactionTemplate(transactionManager), timer, executor, new PaymentOutcomeRegistry(payments, new IdempotencyRegistry(100, 60), 30, 100), registry);
+        p.delay = delay;
+        p.failRate = 0;
+        p.maxPending = maxPending;
+        p.retryAfterSeconds = 2;
+        return p;
+    }
+
+    @Test
+    void deveRecusarComRetryAfterQuandoBacklogCheio() {
+        var processor = processor(new RejectingExecutor(0), 60_000, 1);
+        processor.ensureCapacity(1);
+
+        processor.process(payment("pay_1"));
+
+        assertEquals(1.0, registry.get("fiadopay.payment.pending").gauge().value());
+        var ex = assertThrows(ServiceOverloadedException.class, () -> processor.ensureCapacity(1));
+        assertEquals(2, ex.getRetryAfterSeconds());
+        assertEquals(1.0, registry.get("fiadopay.payment.shed").counter().count());
+    }
+
+    @Test
+    void deveContarOBacklogDaOutboxNoLimite() {
+        var processor = processor(new RejectingExecutor(0), 60_000, 5);
+        // nada com o processador, mas 5 pagamentos criados ainda na outbox
+        when(outboxEvents.countClaimable(eq(OutboxEvent.Type.PAYMENT_CREATED), any())).thenReturn(5L);
+
+        processor.sampleBacklog();
+
+        assertEquals(5.0, registry.get("fiadopay.payment.queued").gauge().value());
+        assertThrows(ServiceOverloadedException.class, () -> processor.ensureCapacity(1));
+    }
+
+    @Test
+    void deveReenfileirarDecisaoQuandoExecutorRecusa() throws Exception {
+        when(payments.transition(eq("pay_1"), eq(PaymentTransition.APPROVE), any())).thenReturn(true);
+
+        var processor = processor(new RejectingExecutor(2), 0, 10);
+
+        var decided = processor.process(payment("pay_1")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Status.APPROVED, decided.getStatus());
+        assertEquals(0.0, registry.get("fiadopay.payment.pending").gauge().value());
+        verify(outbox).publish(argThat(e -> e.getType() == OutboxEvent.Type.PAYMENT_UPDATED
+                && e.getStatus() == Status.APPROVED && e.getMerchantId() == 7L));
+    }
+
+    @Test
+    void deveDevolverNuloQuandoTransicaoPerde() throws Exception {
+        // ex.: pagamento expirou antes da decisão; o UPDATE condicional não casa
+        when(payments.transition(eq("pay_1"), eq(PaymentTransition.APPROVE), any())).thenReturn(false);
+
+        var processor = processor(new RejectingExecutor(0), 0, 10);
+        var payment = payment("pay_1");
+
+        assertNull(processor.process(payment).get(5, TimeUnit.SECONDS));
+        assertEquals(Status.PENDING, payment.getStatus());
+        verify(payments, never()).save(any());
+        verifyNoInteractions(outbox);
+    }
+
+    @Test
+    void deveDecidirLoteNumUnicoBatchEDevolverSoQuemVenceu() throws Exception {
+        when(payments.transitionAll(anyMap(), any())).thenReturn(Set.of("pay_1"));
+
+        var processor = processor(new RejectingExecutor(0), 0, 10);
+        var decided = processor.processAll(List.of(payment("pay_1"), payment("pay_2"))).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, decided.size());
+        assertEquals("pay_1", decided.get(0).getId());
+        assertEquals(Status.APPROVED, decided.get(0).getStatus());
+        verify(payments, times(1)).transitionAll(anyMap(), any());
+        // só o vencedor gera evento, na mesma transação do batch
+        verify(outbox).publishAll(argThat(events -> events.size() == 1
+                && events.get(0).getPaymentId().equals("pay_1")));
+    }
+
+    private static Payment payment(String id) {
+        var p = new Payment();
+        p.setId(id);
+        p.setStatus(Status.PENDING);
+        p.setMerchant(Merchant.builder().id(7L).build());
+        return p;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.ucsal.fiadopay.service.securityService;
+
+import edu.ucsal.fiadopay.domain.user.Role;
+import edu.ucsal.fiadopay.domain.user.User;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private static final String SECRET = "kg2OTmb0NRhLzS7ZfluwbEkU4cJNcC0jPVnmJCUrvUiieRUhB21WCG2g6d6n8GW3";
+
+    private final TokenService tokenService = new TokenService(SECRET, 100);
+
+    private User user() {
+        var user = new User();
+        user.setEmail("dono@loja.com");
+        user.setRole(Role.SHOPKEEPER);
+        return user;
+    }
+
+    @Test
+    void deveExtrairClaimsDoTokenEReusarVerificacao() {
+        String token = tokenService.generateToken(user());
+
+        TokenClaims claims = tokenService.verify(token);
+
+        assertEquals("dono@loja.com", claims.subject());
+        assertEquals("ROLE_SHOPKEEPER", claims.role());
+        assertTrue(claims.expiresAt().isAfter(new Date().toInstant()));
+        assertSame(claims, tokenService.verify(token));
+    }
+
+    @Test
+    void deveRejeitarTokenAdulteradoOuExpirado() {
+        String token = tokenService.generateToken(user());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThrows(JwtException.class, () -> tokenService.verify(tampered));
+
+        String expired = Jwts.builder()
+                .setSubject("dono@loja.com")
+                .claim("role", "ROLE_SHOPKEEPER")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        assertThrows(JwtException.class, () -> tokenService.verify(expired));
+    }
+}
@@ -0,0 +1,205 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.domain.merchant.MerchantSnapshot;
+import edu.ucsal.fiadopay.domain.paymant.Status;
+import edu.ucsal.fiadopay.repo.PaymentRepository;
+import edu.ucsal.fiadopay.service.merchantService.MerchantService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookCoalescerTest {
+
+    @Mock MerchantService merchantService;
+    @Mock PaymentWebhookNotifier notifier;
+    @Mock PaymentRepository payments;
+
+    // notified_at de payment_table
+    final Map<String, Instant> notifiedAt = new HashMap<>();
+
+    SimpleMeterRegistry registry;
+    WebhookCoalescer coalescer;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        coalescer = newCoalescer();
+        lenient().when(payments.markNotified(any())).thenAnswer(inv -> {
+            Map<String, Instant> marks = inv.getArgument(0);
+            Set<String> accepted = new HashSet<>();
+            marks.forEach((id, at) -> {
+                Instant last = notifiedAt.get(id);
+                if (last == null || !at.isBefore(last)) {
+                    notifiedAt.put(id, at);
+                    accepted.add(id);
+                }
+            });
+            return accepted;
+        });
+    }
+
+    // janela longa: o teste decide quando fechar
+    private WebhookCoalescer newCoalescer() {
+        return new WebhookCoalescer(merchantService, notifier, payments, registry, 60_000, 100, 0);
+    }
+
+    @Test
+    void deveEnviarSoOEstadoMaisRecenteDoPagamentoNaJanela() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any())).thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+
+        var approved = coalescer.submit(1L, update("pay_1", Status.APPROVED));
+        var refunded = coalescer.submit(1L, update("pay_1", Status.REFUNDED));
+        assertFalse(approved.isDone());
+
+        coalescer.flushAll();
+
+        verify(notifier, times(1)).notify(eq(merchant), argThat(u -> u.status() == Status.REFUNDED));
+        // o substituído também é confirmado: a outbox pode apagá-lo
+        assertTrue(approved.isDone() && !approved.isCompletedExceptionally());
+        assertTrue(refunded.isDone() && !refunded.isCompletedExceptionally());
+        assertEquals(1.0, registry.get("fiadopay.webhook.coalesced").counter().count());
+    }
+
+    @Test
+    void deveMandarEnvelopeUnicoParaMerchantComBatching() {
+        var merchant = merchant(true);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notifyBatch(eq(merchant), any()))
+                .thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+
+        coalescer.submit(1L, update("pay_1", Status.APPROVED));
+        coalescer.submit(1L, update("pay_2", Status.DECLINED));
+        coalescer.flushAll();
+
+        verify(notifier).notifyBatch(eq(merchant), argThat((List<PaymentUpdate> u) -> u.size() == 2
+                && u.get(0).paymentId().equals("pay_1") && u.get(1).paymentId().equals("pay_2")));
+        verify(notifier, never()).notify(any(), any());
+    }
+
+    @Test
+    void deveFalharOsFuturesQuandoEntregaNaoEGravada() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("lote falhou")));
+
+        var done = coalescer.submit(1L, update("pay_1", Status.APPROVED));
+        coalescer.flushAll();
+
+        assertTrue(done.isCompletedExceptionally());
+    }
+
+    @Test
+    void deveDescartarEstadoMaisAntigoQueChegaAtrasado() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any())).thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+
+        coalescer.submit(1L, new PaymentUpdate("pay_1", Status.REFUNDED, t.plusSeconds(5)));
+        coalescer.flushAll();
+        // APPROVED voltou da outbox depois de uma falha: não pode sobrescrever REFUNDED
+        var late = coalescer.submit(1L, new PaymentUpdate("pay_1", Status.APPROVED, t));
+        coalescer.flushAll();
+
+        assertTrue(late.isDone() && !late.isCompletedExceptionally());
+        verify(notifier, times(1)).notify(any(), any());
+        verify(notifier, never()).notify(any(), argThat(u -> u.status() == Status.APPROVED));
+        assertEquals(1.0, registry.get("fiadopay.webhook.stale").counter().count());
+    }
+
+    @Test
+    void deveDescartarEstadoAtrasadoMesmoDepoisDeUmRestart() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any())).thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+
+        coalescer.submit(1L, new PaymentUpdate("pay_1", Status.REFUNDED, t.plusSeconds(5)));
+        coalescer.flushAll();
+        // outra instância (ou esta depois de reiniciar): nada em memória, só o banco
+        var restarted = newCoalescer();
+        var late = restarted.submit(1L, new PaymentUpdate("pay_1", Status.APPROVED, t));
+        restarted.flushAll();
+
+        assertTrue(late.isDone() && !late.isCompletedExceptionally());
+        verify(notifier, never()).notify(any(), argThat(u -> u.status() == Status.APPROVED));
+    }
+
+    @Test
+    void deveManterOMaisRecenteQuandoOAntigoChegaDepoisNaMesmaJanela() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any())).thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+        Instant t = Instant.parse("2026-01-01T00:00:00Z");
+
+        coalescer.submit(1L, new PaymentUpdate("pay_1", Status.REFUNDED, t.plusSeconds(5)));
+        coalescer.submit(1L, new PaymentUpdate("pay_1", Status.APPROVED, t));
+        coalescer.flushAll();
+
+        verify(notifier).notify(eq(merchant), argThat(u -> u.status() == Status.REFUNDED));
+        verify(notifier, never()).notify(any(), argThat(u -> u.status() == Status.APPROVED));
+    }
+
+    @Test
+    void naoDeveEnviarQuandoAMarcaNoBancoFalha() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        doThrow(new IllegalStateException("banco fora")).when(payments).markNotified(any());
+
+        var done = coalescer.submit(1L, update("pay_1", Status.APPROVED));
+        coalescer.flushAll();
+
+        // falha: a outbox tenta de novo quando o lease vencer
+        assertTrue(done.isCompletedExceptionally());
+        verify(notifier, never()).notify(any(), any());
+    }
+
+    @Test
+    void deveLiberarOBufferDaUrlOciosa() {
+        var merchant = merchant(false);
+        when(merchantService.findById(1L)).thenReturn(merchant);
+        when(notifier.notify(eq(merchant), any())).thenReturn(CompletableFuture.completedFuture(new WebhookDelivery()));
+        var endpoints = registry.get("fiadopay.webhook.coalesce.endpoints").gauge();
+
+        coalescer.submit(1L, update("pay_1", Status.APPROVED));
+        coalescer.flushDue();
+        assertEquals(1.0, endpoints.value()); // buffer com estado não sai
+
+        coalescer.flushAll();
+        coalescer.flushDue();
+        assertEquals(0.0, endpoints.value());
+
+        // a URL volta a receber estados: buffer novo, entrega normal
+        var done = coalescer.submit(1L, update("pay_2", Status.APPROVED));
+        coalescer.flushAll();
+        assertTrue(done.isDone() && !done.isCompletedExceptionally());
+        verify(notifier, times(2)).notify(eq(merchant), any());
+    }
+
+    private static MerchantSnapshot merchant(boolean batching) {
+        return MerchantSnapshot.builder().id(1L).webhookUrl("http://loja/wh").webhookBatching(batching).build();
+    }
+
+    private static PaymentUpdate update(String paymentId, Status status) {
+        return new PaymentUpdate(paymentId, status, Instant.now());
+    }
+}
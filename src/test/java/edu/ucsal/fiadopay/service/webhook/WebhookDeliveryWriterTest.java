@@ -0,0 +1,155 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.repo.WebhookDeliveryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookDeliveryWriterTest {
+
+    @Mock WebhookDeliveryRepository deliveries;
+    @Mock JdbcTemplate jdbc;
+    @Mock TransactionTemplate tx;
+
+    ScheduledExecutorService timer;
+    WebhookDeliveryWriter writer;
+
+    @BeforeEach
+    void setup() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        writer = new WebhookDeliveryWriter(deliveries, jdbc, tx, new SimpleMeterRegistry(), timer, 50, 20);
+    }
+
+    @AfterEach
+    void stop() {
+        timer.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactions() {
+        doAnswer(inv -> {
+            inv.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(tx).executeWithoutResult(any());
+    }
+
+    private WebhookDelivery delivery(Long id, int attempts) {
+        return WebhookDelivery.builder().id(id).attempts(attempts).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveGravarInsertsEmLoteEsoDepoisCompletar() {
+        runTransactions();
+
+        var first = writer.insert(delivery(null, 0));
+        var second = writer.insert(delivery(null, 0));
+        assertFalse(first.isDone());
+
+        writer.flush();
+
+        ArgumentCaptor<List<WebhookDelivery>> batch = ArgumentCaptor.forClass(List.class);
+        verify(deliveries, times(1)).saveAll(batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertTrue(first.isDone() && second.isDone());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveCoalescerAtualizacoesDaMesmaEntrega() {
+        var d = delivery(1L, 1);
+        writer.update(d);
+        d.setAttempts(2);
+        writer.update(d);
+        writer.update(delivery(2L, 1));
+
+        writer.flush();
+
+        ArgumentCaptor<Collection<Object>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbc, times(1)).batchUpdate(anyString(), batch.capture(), eq(2), any());
+        assertEquals(2, batch.getValue().size());
+        assertTrue(batch.getValue().toString().contains("id=1, attempts=2"));
+    }
+
+    @Test
+    void deveFazerFlushNoPrazoMesmoComSchedulerDoSpringOcupado() throws Exception {
+        runTransactions();
+        // o scheduler padrão do Spring tem uma thread; um drain lento a ocupa
+        ScheduledExecutorService springScheduler = Executors.newSingleThreadScheduledExecutor();
+        var slowDrain = new CountDownLatch(1);
+        springScheduler.execute(() -> {
+            try {
+                slowDrain.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            writer.start();
+            var saved = writer.insert(delivery(null, 0));
+
+            assertNotNull(saved.get(1, TimeUnit.SECONDS));
+            assertEquals(1, slowDrain.getCount(), "o drain ainda estava rodando");
+        } finally {
+            slowDrain.countDown();
+            springScheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void deveCompletarInsertsForaDoMonitorDoWriter() {
+        runTransactions();
+        var saved = writer.insert(delivery(null, 0));
+        var heldLock = new AtomicBoolean(true);
+        saved.thenRun(() -> heldLock.set(Thread.holdsLock(writer)));
+
+        writer.flush();
+
+        assertTrue(saved.isDone());
+        assertFalse(heldLock.get(), "callback rodou com o lock do writer");
+    }
+
+    @Test
+    void deveGravarLoteCheioNoTimerENaoNaThreadDeQuemInsere() throws Exception {
+        var flusher = new AtomicReference<Thread>();
+        doAnswer(inv -> {
+            flusher.set(Thread.currentThread());
+            inv.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(tx).executeWithoutResult(any());
+
+        var futures = new ArrayList<CompletableFuture<WebhookDelivery>>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(writer.insert(delivery(null, 0)));
+        }
+
+        futures.get(49).get(1, TimeUnit.SECONDS);
+        assertNotSame(Thread.currentThread(), flusher.get());
+    }
+}
@@ -0,0 +1,124 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookEndpointGuardTest {
+
+    static final String URL = "http://loja:8080/wh";
+
+    AtomicLong now = new AtomicLong(1_000_000_000L);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    WebhookEndpointGuard guard;
+
+    @BeforeEach
+    void setup() {
+        // 2 envios por host, abre com 3 falhas por 10s, estaciona por 1s
+        guard = new WebhookEndpointGuard(registry, 2, 3, 10_000, 1_000, now::get);
+    }
+
+    @Test
+    void deveAbrirCircuitoAposFalhasSeguidasEEstacionarAteOPrazo() {
+        for (int i = 0; i < 3; i++) {
+            guard.admit(URL).permit().release(false);
+        }
+
+        assertEquals(WebhookEndpointGuard.State.OPEN, guard.state(URL));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        var parked = guard.admit(URL);
+        assertFalse(parked.admitted());
+        assertEquals(TimeUnit.SECONDS.toNanos(6), parked.waitNanos());
+        assertEquals(1.0, registry.get("fiadopay.webhook.parked")
+                .tags("host", "loja:8080", "reason", "open").counter().count());
+        assertEquals(2.0, registry.get("fiadopay.webhook.breaker.state").tag("host", "loja:8080").gauge().value());
+        // outro host não é afetado
+        assertTrue(guard.admit("http://outra/wh").admitted());
+    }
+
+    @Test
+    void deveLiberarUmaSondaEFecharQuandoElaPassa() {
+        for (int i = 0; i < 3; i++) {
+            guard.admit(URL).permit().release(false);
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        var probe = guard.admit(URL);
+        assertTrue(probe.admitted());
+        assertEquals(WebhookEndpointGuard.State.HALF_OPEN, guard.state(URL));
+        // só uma sonda por vez
+        assertFalse(guard.admit(URL).admitted());
+
+        probe.permit().release(true);
+
+        assertEquals(WebhookEndpointGuard.State.CLOSED, guard.state(URL));
+        assertTrue(guard.admit(URL).admitted());
+    }
+
+    @Test
+    void deveReabrirQuandoASondaFalha() {
+        for (int i = 0; i < 3; i++) {
+            guard.admit(URL).permit().release(false);
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        guard.admit(URL).permit().release(false);
+
+        assertEquals(WebhookEndpointGuard.State.OPEN, guard.state(URL));
+        assertEquals(TimeUnit.SECONDS.toNanos(10), guard.admit(URL).waitNanos());
+    }
+
+    @Test
+    void deveIgnorarResultadoDeEnvioAutorizadoAntesDoCircuitoAbrir() {
+        guard = new WebhookEndpointGuard(registry, 10, 3, 10_000, 1_000, now::get);
+        // em voo enquanto o circuito ainda estava fechado
+        var slowOk = guard.admit(URL).permit();
+        var slowFail = guard.admit(URL).permit();
+        for (int i = 0; i < 3; i++) {
+            guard.admit(URL).permit().release(false);
+        }
+        assertEquals(WebhookEndpointGuard.State.OPEN, guard.state(URL));
+
+        // um sucesso atrasado não cancela a abertura
+        slowOk.release(true);
+        assertEquals(WebhookEndpointGuard.State.OPEN, guard.state(URL));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        var probe = guard.admit(URL).permit();
+        assertEquals(WebhookEndpointGuard.State.HALF_OPEN, guard.state(URL));
+
+        // uma falha atrasada não decide a sonda
+        slowFail.release(false);
+        assertEquals(WebhookEndpointGuard.State.HALF_OPEN, guard.state(URL));
+
+        probe.release(true);
+        assertEquals(WebhookEndpointGuard.State.CLOSED, guard.state(URL));
+        // latência dos envios atrasados continua registrada
+        assertEquals(4, registry.get("fiadopay.webhook.host.latency")
+                .tags("host", "loja:8080", "outcome", "failure").timer().count());
+    }
+
+    @Test
+    void deveEstacionarQuandoOHostNaoTemVaga() {
+        var a = guard.admit(URL);
+        var b = guard.admit(URL);
+        assertTrue(a.admitted() && b.admitted());
+
+        var busy = guard.admit(URL);
+        assertFalse(busy.admitted());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), busy.waitNanos());
+        assertEquals(2.0, registry.get("fiadopay.webhook.host.inflight").tag("host", "loja:8080").gauge().value());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+        a.permit().release(true);
+        assertTrue(guard.admit(URL).admitted());
+        assertEquals(WebhookEndpointGuard.State.CLOSED, guard.state(URL));
+        assertEquals(1, registry.get("fiadopay.webhook.host.latency")
+                .tags("host", "loja:8080", "outcome", "success").timer().count());
+    }
+}
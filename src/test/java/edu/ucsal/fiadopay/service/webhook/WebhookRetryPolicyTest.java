@@ -0,0 +1,42 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookRetryPolicyTest {
+
+    WebhookRetryPolicy policy = new WebhookRetryPolicy(5, 1000, 8000, 30000);
+
+    @Test
+    void deveDobrarOAtrasoComJitterDentroDosLimites() {
+        Instant now = Instant.now();
+
+        for (int attempts = 1; attempts <= 4; attempts++) {
+            long exp = 1000L << (attempts - 1);
+            for (int i = 0; i < 100; i++) {
+                long delay = Duration.between(now, policy.nextAttemptAt(attempts, now)).toMillis();
+                assertTrue(delay >= exp / 2 && delay <= exp,
+                        "tentativa " + attempts + " gerou atraso " + delay);
+            }
+        }
+    }
+
+    @Test
+    void deveRespeitarOAtrasoMaximo() {
+        Instant now = Instant.now();
+
+        long delay = Duration.between(now, policy.nextAttemptAt(40, now)).toMillis();
+
+        assertTrue(delay <= 8000);
+    }
+
+    @Test
+    void devePararDepoisDoLimiteDeTentativas() {
+        assertTrue(policy.canRetry(4));
+        assertFalse(policy.canRetry(5));
+    }
+}
@@ -0,0 +1,55 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import edu.ucsal.fiadopay.domain.WebhookDelivery.WebhookDelivery;
+import edu.ucsal.fiadopay.repo.WebhookDeliveryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookRetrySchedulerTest {
+
+    @Mock WebhookDeliveryRepository deliveries;
+    @Mock WebhookDeliveryService deliveryService;
+
+    WebhookRetryScheduler scheduler;
+
+    @BeforeEach
+    void setup() {
+        var policy = new WebhookRetryPolicy(5, 1000, 300_000, 30_000);
+        scheduler = new WebhookRetryScheduler(deliveries, deliveryService, policy, 100);
+    }
+
+    @Test
+    void deveDespacharSoAsEntregasReservadasPorEsteClaim() {
+        var d1 = delivery(1L);
+        var d2 = delivery(2L);
+        var d3 = delivery(3L);
+        when(deliveries.findByDeliveredFalseAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(any(), any()))
+                .thenReturn(List.of(d1, d2, d3));
+        when(deliveryService.isInFlight(anyLong())).thenAnswer(inv -> inv.getArgument(0).equals(3L));
+        // a 2 ficou com outra instância
+        when(deliveries.claim(eq(List.of(1L, 2L)), any(), any())).thenReturn(Set.of(1L));
+
+        scheduler.dispatchDue();
+
+        verify(deliveryService).dispatch(d1);
+        verify(deliveryService, never()).dispatch(d2);
+        verify(deliveryService, never()).dispatch(d3);
+        // o lease já está no banco; a entidade só acompanha
+        assertTrue(d1.getNextAttemptAt().isAfter(Instant.now()));
+    }
+
+    private static WebhookDelivery delivery(Long id) {
+        return WebhookDelivery.builder().id(id).nextAttemptAt(Instant.now().minusSeconds(1)).build();
+    }
+}
@@ -0,0 +1,37 @@
+package edu.ucsal.fiadopay.service.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebhookSignerTest {
+
+    private final WebhookSigner signer = new WebhookSigner("ucsal-2025");
+    private final byte[] payload = "{\"id\":\"evt_1\",\"type\":\"payment.updated\"}".getBytes(StandardCharsets.UTF_8);
+
+    private String expected() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("ucsal-2025".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(payload));
+    }
+
+    @Test
+    void deveAssinarOsBytesComHmacSha256() throws Exception {
+        assertEquals(expected(), signer.sign(payload));
+        // o Mac reaproveitado não pode carregar estado da assinatura anterior
+        assertEquals(expected(), signer.sign(payload));
+    }
+
+    @Test
+    void deveAssinarIgualEmThreadVirtual() throws Exception {
+        try (var vt = Executors.newVirtualThreadPerTaskExecutor()) {
+            assertEquals(expected(), vt.submit(() -> signer.sign(payload)).get());
+        }
+    }
+}